@@ -9,6 +9,9 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Files;
@@ -22,6 +25,7 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -112,6 +116,8 @@ static final String[] SETTING_PATH_ON = new String[] {Setting.ON};
 
 public static final SettingMapFactory SETTING_MAP_FACTORY = HashMap::new;
 
+private static final int SETTING_LISTENER_CLEANUP_INTERVAL = 100;
+
 /**
  * Singleton instance of {@link Chung}
  */
@@ -129,9 +135,12 @@ private final Logger log;
 private final JSONManager json;
 private final EventManager eventManager;
 private final Map<Class<?>, Collection<SettingListener>> settingListeners;
+private final ReferenceQueue<SettingListener> staleSettingListeners;
 
 private Set<ModuleManager<?>> enabledModules;
 private Map<ModuleID<?>, Map<String, Object>> savedSettingBuffer;
+private int weakSettingListenerCount;
+private boolean settingCleanupScheduled;
 
 private Chung(Minecraft mc, Logger log, JSONManager json) {
 	super(log, new DoubleKeyHashMap<>(ModuleLoader.MODULE_MAP_KEY_CONVERTER), new DirectorySettingManager(log, json, Collections.emptySet(),
@@ -141,6 +150,7 @@ private Chung(Minecraft mc, Logger log, JSONManager json) {
 	this.json = json;
 	eventManager = new EventManager(log);
 	settingListeners = new ClassHashMap<>();
+	staleSettingListeners = new ReferenceQueue<>();
 }
 
 @Override
@@ -230,6 +240,7 @@ void init() {
 		configs.remove(SettingManager.TEMPORARY_CONFIG);
 	});
 	magnileve.chungamod.Tick.init(log);
+	magnileve.chungamod.tasks.AsyncTasks.init(log);
 	magnileve.chungamod.packets.PacketListener.init(log);
 	ChungamodModule.init(log);
 	log.info(() -> log.getMessageFactory().newMessage("Chungamod core initialized in {}",
@@ -242,6 +253,12 @@ void init() {
 			
 			magnileve.chungamod.util.MCUtil.class,
 			magnileve.chungamod.Tick.class,
+			magnileve.chungamod.TickProfiler.class,
+			magnileve.chungamod.ListenerReport.class,
+			magnileve.chungamod.tasks.AsyncTasks.class,
+			magnileve.chungamod.events.StatsEventTracer.class,
+			magnileve.chungamod.packets.PacketMetrics.class,
+			magnileve.chungamod.packets.PacketListener.class,
 			magnileve.chungamod.gui.values.BlockPosButton.class,
 			magnileve.chungamod.settings.AbstractSettingManager.class,
 			
@@ -423,27 +440,68 @@ public DateTimeFormatter getTimeFormatter() {
 
 /**
  * Adds a listener for changes in settings of a module.  Modules are automatically added to listen to themselves when enabled.
+ * If the listener was added weakly for the same module, it is replaced by this strong registration.
  * @param moduleClass class of module
  * @param listener listener for changes in settings
  * @see #removeSettingListener(Class, SettingListener)
  */
 public void addSettingListener(Class<?> moduleClass, SettingListener listener) {
 	log.trace("Adding setting listener {} for {}", listener, moduleClass);
-	settingListeners.computeIfAbsent(moduleClass, m -> new ArrayBuildList<>(new SettingListener[1])).add(listener);
+	Collection<SettingListener> listeners = settingListeners.computeIfAbsent(moduleClass, m -> new ArrayBuildList<>(new SettingListener[1]));
+	Iterator<SettingListener> iter = listeners.iterator();
+	while(iter.hasNext()) {
+		SettingListener next = iter.next();
+		if(next instanceof WeakSettingListener && ((WeakSettingListener) next).get() == listener) {
+			iter.remove();
+			weakSettingListenerCount--;
+			break;
+		}
+	}
+	listeners.add(listener);
 }
 
 /**
- * Removes a listener for changes in settings of a module.  Modules are automatically removed from listening to themselves when disabled.
+ * Adds a listener for changes in settings of a module without preventing the listener from being garbage collected.
+ * Once the listener is collected, it is removed during a later {@link Tick#MAIN}.
+ * Does nothing if the listener is already added, either normally or weakly, for the same module.
+ * This method should be called on the client thread.
+ * @param moduleClass class of module
+ * @param listener listener for changes in settings
+ * @see #removeSettingListener(Class, SettingListener)
+ */
+public void addWeakSettingListener(Class<?> moduleClass, SettingListener listener) {
+	Collection<SettingListener> listeners = settingListeners.computeIfAbsent(moduleClass, m -> new ArrayBuildList<>(new SettingListener[1]));
+	for(SettingListener next:listeners) if(next == listener || next instanceof WeakSettingListener && ((WeakSettingListener) next).get() == listener) {
+		log.trace("Setting listener {} for {} is already added", listener, moduleClass);
+		return;
+	}
+	log.trace("Adding weak setting listener {} for {}", listener, moduleClass);
+	listeners.add(new WeakSettingListener(moduleClass, listener, staleSettingListeners));
+	weakSettingListenerCount++;
+	if(!settingCleanupScheduled) {
+		settingCleanupScheduled = true;
+		Tick.MAIN.add(this::cleanStaleSettingListeners, SETTING_LISTENER_CLEANUP_INTERVAL);
+	}
+}
+
+/**
+ * Removes a listener for changes in settings of a module, whether it was added normally or weakly.
+ * Modules are automatically removed from listening to themselves when disabled.
  * @param moduleClass class of module
  * @param listener listener for changes in settings
  * @see #addSettingListener(Class, SettingListener)
+ * @see #addWeakSettingListener(Class, SettingListener)
  */
 public boolean removeSettingListener(Class<?> moduleClass, SettingListener listener) {
 	Collection<SettingListener> listeners = settingListeners.get(moduleClass);
 	if(listeners != null) {
 		Iterator<SettingListener> iter = listeners.iterator();
-		while(iter.hasNext()) if(listener.equals(iter.next())) {
+		while(iter.hasNext()) {
+			SettingListener next = iter.next();
+			boolean weak = next instanceof WeakSettingListener;
+			if(!listener.equals(next) && !(weak && ((WeakSettingListener) next).get() == listener)) continue;
 			iter.remove();
+			if(weak) weakSettingListenerCount--;
 			if(listeners.isEmpty()) settingListeners.remove(moduleClass);
 			log.trace("Removed setting listener {} for {}", listener, moduleClass);
 			return true;
@@ -453,6 +511,43 @@ public boolean removeSettingListener(Class<?> moduleClass, SettingListener liste
 	return false;
 }
 
+/**
+ * Removes weak setting listeners that have been garbage collected, taking only the references enqueued since the last cleanup,
+ * and continuing every {@value #SETTING_LISTENER_CLEANUP_INTERVAL} ticks until there are no weak setting listeners.
+ * @return ticks until the next cleanup, or {@code -1} to stop
+ */
+private int cleanStaleSettingListeners() {
+	for(Reference<? extends SettingListener> ref = staleSettingListeners.poll(); ref != null; ref = staleSettingListeners.poll()) {
+		Class<?> moduleClass = ((WeakSettingListener) ref).moduleClass;
+		Collection<SettingListener> listeners = settingListeners.get(moduleClass);
+		if(listeners != null && listeners.remove(ref)) {
+			weakSettingListenerCount--;
+			if(listeners.isEmpty()) settingListeners.remove(moduleClass);
+			log.trace("Removed collected setting listener for {}", moduleClass);
+		}
+	}
+	if(weakSettingListenerCount > 0) return SETTING_LISTENER_CLEANUP_INTERVAL;
+	settingCleanupScheduled = false;
+	return -1;
+}
+
+/**
+ * Gets the setting listeners of each module class that have not been garbage collected.
+ * @return a new map of each module class to its setting listeners
+ */
+public Map<Class<?>, List<SettingListener>> getSettingListeners() {
+	Map<Class<?>, List<SettingListener>> map = new LinkedHashMap<>();
+	for(Entry<Class<?>, Collection<SettingListener>> entry:settingListeners.entrySet()) {
+		List<SettingListener> list = new ArrayBuildList<>(new SettingListener[entry.getValue().size()]);
+		for(SettingListener listener:entry.getValue()) {
+			if(listener instanceof WeakSettingListener) listener = ((WeakSettingListener) listener).get();
+			if(listener != null) list.add(listener);
+		}
+		map.put(entry.getKey(), list);
+	}
+	return map;
+}
+
 /**
  * Notifies any setting listeners of a change in the value of a setting.
  * @param moduleClass the class of the module of the setting
@@ -505,7 +600,7 @@ public Object get(ModuleID<?> m, String... settingPath) {
  * @throws InvalidSettingPathException if the provided setting path is invalid
  */
 private Object get(ModuleID<?> m, ModuleManager<?> manager, String... settingPath) {
-	return SettingUtil.getValue(manager.getSettings(), settingPath, SettingInfo.getTree(m));
+	return SettingUtil.getValue(manager.getSettings(), settingPath, SettingInfo.getSharedTree(m));
 }
 
 @Override
@@ -568,7 +663,7 @@ private Object set(String config, ModuleID<?> m, ModuleManager<?> manager, Objec
 			SettingUtil.setValue(savedSettingBuffer, m, settingPath, Util.recursiveArrayClone(value), settings);
 	if(SettingManager.TEMPORARY_CONFIG.equals(config)) {
 		if(manager == null) manager = getModuleManager(m);
-		oldValue = SettingUtil.setValue(manager.getSettings(), settingPath, value, SettingInfo.getTree(m), settings);
+		oldValue = SettingUtil.setValue(manager.getSettings(), settingPath, value, SettingInfo.getSharedTree(m), settings);
 		if(!Util.equals(value, oldValue)) {
 			boolean toggleModule = settingPath[0].equalsIgnoreCase(Setting.ON) && settingPath.length == 1;
 			if(toggleModule && !(boolean) value) stopModule(manager);
@@ -610,7 +705,7 @@ private Object remove(String config, ModuleID<?> m, ModuleManager<?> manager, St
 	if(SettingManager.TEMPORARY_CONFIG.equals(config)) {
 		Object value = settings.loadSetting(m, settingPath);
 		if(!Util.equals(value, oldValue)) {
-			SettingUtil.setValue(manager.getSettings(), settingPath, value, SettingInfo.getTree(m), settings);
+			SettingUtil.setValue(manager.getSettings(), settingPath, value, SettingInfo.getSharedTree(m), settings);
 			notifySettingListeners(m.getModuleType(), settingPath, value);
 		}
 	}
@@ -671,29 +766,47 @@ private void set(ModuleID<?> m, ModuleManager<?> manager, Map<String, Object> se
 
 /**
  * Clears {@value SettingManager#TEMPORARY_CONFIG} and reloads all settings.
+ * The values of all settings are resolved before any are applied,
+ * then only changed settings are applied and setting listeners are notified of them in one batch.
  */
 public void reloadSettings() {
 	settings.clearTemporaryConfig();
-	//load all configs to copies of module setting maps
-	Map<String, Map<String, Bucket<SettingInfoMap, Map<String, Object>>>> pluginMap = new HashMap<>(4);
-	SettingUtil.sortByPlugin(modules.values().stream()
-			.map(m -> Bucket.<ModuleID<?>, Bucket<SettingInfoMap, Map<String, Object>>>of(m.getModuleID(),
-					Bucket.of(new SettingInfoMap(m.getModuleID()), SettingUtil.copySettings(m.getSettings(), () -> new HashMap<>(8)))))
-			::iterator, pluginMap);
-	settings.loadSettings(pluginMap, SettingManager.TEMPORARY_CONFIG, null);
-	for(String config:settings.getActiveConfigs()) settings.loadSettings(pluginMap, config, null);
-	settings.loadDefaultSettings(pluginMap, null);
-	//run set calls for each setting
-	savedSettingBuffer = new HashMap<>();
+	//resolve all configs into copies of module setting maps, collecting changed settings
 	Map<ModuleID<?>, Map<String, Object>> loadedSettings = new HashMap<>();
-	for(Map<String, Bucket<SettingInfoMap, Map<String, Object>>> plugin:pluginMap.values()) for(Entry<String,
-			Bucket<SettingInfoMap, Map<String, Object>>> entry:plugin.entrySet()) {
-		ModuleManager<?> manager = getModuleManager(entry.getKey());
-		ModuleID<?> m = manager.getModuleID();
-		Map<String, Object> settings = entry.getValue().getE2();
-		loadedSettings.put(m, settings);
-		set(m, manager, settings, new String[1], SettingInfo.getTree(m));
+	Map<ModuleID<?>, List<Bucket<String[], Object>>> changes = settings.resolveChanges(modules.values().stream()
+			.map(m -> {
+				Map<String, Object> copy = SettingUtil.copySettings(m.getSettings(), () -> new HashMap<>(8));
+				loadedSettings.put(m.getModuleID(), copy);
+				return Bucket.<ModuleID<?>, Bucket<SettingInfoMap, Map<String, Object>>>of(m.getModuleID(),
+						Bucket.of(new SettingInfoMap(m.getModuleID()), copy));
+			})::iterator);
+	//apply all changed settings, then stop modules, notify listeners, and start modules
+	savedSettingBuffer = new HashMap<>();
+	List<ModuleManager<?>> stopping = new ArrayBuildList<>(ModuleManager.class);
+	List<ModuleManager<?>> starting = new ArrayBuildList<>(ModuleManager.class);
+	for(Entry<ModuleID<?>, List<Bucket<String[], Object>>> moduleChanges:changes.entrySet()) {
+		ModuleID<?> m = moduleChanges.getKey();
+		ModuleManager<?> manager = getModuleManager(m);
+		SettingInfo tree = SettingInfo.getSharedTree(m);
+		for(Bucket<String[], Object> change:moduleChanges.getValue()) {
+			String[] settingPath = change.getE1();
+			Object value = change.getE2();
+			Object oldValue = SettingUtil.setValue(manager.getSettings(), settingPath, Util.recursiveArrayClone(value), tree, settings);
+			if(settingPath.length == 1 && settingPath[0].equalsIgnoreCase(Setting.ON)) {
+				if(!(boolean) value) stopping.add(manager);
+				else if(oldValue != null && !(boolean) oldValue) starting.add(manager);
+			}
+		}
 	}
+	for(ModuleManager<?> manager:stopping) stopModule(manager);
+	//listeners may set settings of this batch, so each is notified of the current value rather than the resolved one
+	for(Entry<ModuleID<?>, List<Bucket<String[], Object>>> moduleChanges:changes.entrySet()) {
+		ModuleID<?> m = moduleChanges.getKey();
+		ModuleManager<?> manager = getModuleManager(m);
+		for(Bucket<String[], Object> change:moduleChanges.getValue())
+			notifySettingListeners(m.getModuleType(), change.getE1(), get(m, manager, change.getE1()));
+	}
+	for(ModuleManager<?> manager:starting) startModule(manager, null);
 	//find and collect new settings from recursive set calls
 	Map<ModuleID<?>, Map<String, Object>> saveTmp = new HashMap<>();
 	for(Entry<ModuleID<?>, Map<String, Object>> entry:savedSettingBuffer.entrySet()) {
@@ -937,7 +1050,7 @@ private Object[] getParameterInstances(ModuleManager<?> m, Parameter[] parameter
 			}
 			String[] settingPath = settingRequest.value();
 			Object value = settingPath.length == 0 ? rootMap :
-				SettingUtil.getValue(rootMap, settingPath, SettingInfo.getTree(forModule.getModuleID()));
+				SettingUtil.getValue(rootMap, settingPath, SettingInfo.getSharedTree(forModule.getModuleID()));
 			if(value instanceof Map) {
 				String name = parameters[i].getName();
 				name = Character.toUpperCase(name.charAt(0)) + name.substring(1);
@@ -998,12 +1111,12 @@ private Object[] getParameterInstances(ModuleManager<?> m, Parameter[] parameter
 @Override
 public SettingTraverser traverser(ModuleID<?> m, String... settingPath) {
 	return new SettingTraverser(SettingUtil.getMapOfSettingSafe(getModuleManager(m).getSettings(),
-			settingPath, SettingInfo.getTree(m), settingPath.length), settingPath);
+			settingPath, SettingInfo.getSharedTree(m), settingPath.length), settingPath);
 }
 
 private SettingTraverser traverser(ModuleManager<?> m, String... settingPath) {
 	return new SettingTraverser(SettingUtil.getMapOfSettingSafe(m.getSettings(),
-			settingPath, SettingInfo.getTree(m.getModuleID()), settingPath.length), settingPath);
+			settingPath, SettingInfo.getSharedTree(m.getModuleID()), settingPath.length), settingPath);
 }
 
 public EventManager getEventManager() {
@@ -1018,4 +1131,23 @@ public String[] settingPathOn() {
 	return SETTING_PATH_ON.clone();
 }
 
+/**
+ * Passes changes in settings to a listener that may be garbage collected.
+ * @author Magnileve
+ */
+private static class WeakSettingListener extends WeakReference<SettingListener> implements SettingListener {
+	private final Class<?> moduleClass;
+	
+	private WeakSettingListener(Class<?> moduleClass, SettingListener listener, ReferenceQueue<SettingListener> queue) {
+		super(listener, queue);
+		this.moduleClass = moduleClass;
+	}
+	
+	@Override
+	public void onNewSetting(String[] settingPath, Object value) {
+		SettingListener listener = get();
+		if(listener != null) listener.onNewSetting(settingPath, value);
+	}
+}
+
 }
\ No newline at end of file
@@ -58,6 +58,7 @@ private final Logger log;
 private final List<Hotkey> hotkeys;
 
 private Task setKeybindListener;
+private Tick.Registration tickRegistration = Tick.Registration.INACTIVE;
 private boolean newSettingDetection = true;
 
 @Init.PreInit1
@@ -109,21 +110,21 @@ public void run() {
 		ListIterator<Hotkey> iter = hotkeys.listIterator();
 		while(iter.hasNext()) iter.set(((UninitializedHotkey) iter.next()).initialize());
 	}
-	Tick.MAIN.add(this, 0);
+	tickRegistration = Tick.MAIN.add(this, 0);
 	instance = this;
 }
 
 @Override
 public void disable() {
 	if(setKeybindListener != null) setKeybindListener.cancel();
-	Tick.MAIN.remove(this);
+	tickRegistration.cancel();
 	instance = null;
 }
 
 @Override
 public void softDisable() {
 	if(setKeybindListener != null) setKeybindListener.softCancel();
-	Tick.MAIN.remove(this);
+	tickRegistration.cancel();
 	instance = null;
 }
 
@@ -0,0 +1,94 @@
+package magnileve.chungamod;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import magnileve.chungamod.Commands.Command;
+import magnileve.chungamod.Commands.CommandFactory;
+import magnileve.chungamod.Commands.ContainsCommand;
+import magnileve.chungamod.modules.Module;
+import magnileve.chungamod.modules.ModuleID;
+import magnileve.chungamod.settings.SettingListener;
+import magnileve.chungamod.util.MCUtil;
+
+/**
+ * Reports the event and setting listeners of Chungamod that have not been garbage collected, grouped by the module declaring them.
+ * A listener that is an instance of a module, but not the current instance of that module, is counted as detached,
+ * which usually means it was not removed when its module was disabled or disconnected.
+ * The report is sent through the command {@code listeners}.
+ * @author Magnileve
+ * @see TickProfiler#getOwner(Class)
+ */
+@ContainsCommand
+public class ListenerReport {
+
+private static final String UNOWNED = "(no module)";
+
+private final Map<String, OwnerListeners> owners;
+
+private ListenerReport() {
+	owners = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+}
+
+/**
+ * Creates a report of the current listeners of {@link Chung#US}.
+ * @return a new report
+ */
+public static ListenerReport create() {
+	ListenerReport report = new ListenerReport();
+	for(List<Object> listeners:Chung.US.getEventManager().getListeners().values())
+		for(Object listener:listeners) report.get(listener).eventRegistrations++;
+	for(List<SettingListener> listeners:Chung.US.getSettingListeners().values())
+		for(SettingListener listener:listeners) report.get(listener).settingListeners++;
+	return report;
+}
+
+/**
+ * Records a listener under its owner.
+ * @param listener a listener
+ * @return the listeners of the owner of {@code listener}
+ */
+private OwnerListeners get(Object listener) {
+	ModuleID<?> m = TickProfiler.getOwner(listener.getClass());
+	OwnerListeners ownerListeners = owners.computeIfAbsent(m == null ? UNOWNED : m.getName(), name -> new OwnerListeners());
+	if(ownerListeners.listeners.add(listener) && listener instanceof Module) {
+		ModuleID<?> listenerModule = Chung.US.getModule(listener.getClass().asSubclass(Module.class));
+		if(listenerModule != null && listenerModule.getInstance() != listener) ownerListeners.detached++;
+	}
+	return ownerListeners;
+}
+
+@Override
+public String toString() {
+	StringBuilder str = new StringBuilder("\n----- Live Listeners: -----");
+	for(Map.Entry<String, OwnerListeners> entry:owners.entrySet()) {
+		OwnerListeners ownerListeners = entry.getValue();
+		str.append("\n- ").append(entry.getKey()).append(": ").append(ownerListeners.listeners.size()).append(" listeners, ")
+				.append(ownerListeners.eventRegistrations).append(" event registrations, ")
+				.append(ownerListeners.settingListeners).append(" setting listeners");
+		if(ownerListeners.detached > 0) str.append(", ").append(ownerListeners.detached).append(" detached");
+	}
+	return str.toString();
+}
+
+@CommandFactory(name = "listeners", description = "Lists live event and setting listeners by module")
+static Command listenersCommand() {
+	return args -> () -> MCUtil.sendMessage(create().toString());
+}
+
+/**
+ * Contains the counts of listeners declared by a module.
+ * @author Magnileve
+ */
+private static class OwnerListeners {
+	private final Set<Object> listeners = Collections.newSetFromMap(new IdentityHashMap<>());
+	private int eventRegistrations;
+	private int settingListeners;
+	private int detached;
+}
+
+}
\ No newline at end of file
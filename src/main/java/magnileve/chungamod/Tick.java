@@ -1,12 +1,19 @@
 package magnileve.chungamod;
 
-import java.util.Iterator;
-import java.util.PriorityQueue;
+import java.util.Arrays;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
 
 import org.apache.logging.log4j.Logger;
 
+import magnileve.chungamod.modules.ContainsInit;
+import magnileve.chungamod.modules.Init;
+import magnileve.chungamod.util.MPSCRing;
+import magnileve.chungamod.util.Util;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent.ClientTickEvent;
@@ -17,11 +24,17 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 
 /**
  * Allows simple scheduling of listeners for a tick.  A tick refers to one loop in a cycle.
+ * Listeners are stored in a hierarchical timing wheel, so scheduling and expiring a listener takes constant time.
+ * Containers for scheduled listeners are pooled and reused when a listener is rescheduled.
+ * Each scheduled listener is given a {@link Registration} that can cancel it in constant time;
+ * cancelled containers are left in place and discarded when they expire.
+ * Each tick may be given a time budget, after which remaining listeners and runnables are deferred to the next tick.
  * @author Magnileve
  * @see #MAIN
  * @see TickListener
  */
 @Mod.EventBusSubscriber(modid=Chung.MODID)
+@ContainsInit
 public class Tick {
 
 /**
@@ -29,36 +42,112 @@ public class Tick {
  * @see #CLIENT_POST
  * @see #RENDER_POST
  */
-public static final Tick MAIN = new Tick();
+public static final Tick MAIN = new Tick("Main");
 /**
  * The end of the Mincerfat client tick.
  * @see #MAIN
  */
-public static final Tick CLIENT_POST = new Tick();
+public static final Tick CLIENT_POST = new Tick("ClientPost");
 /**
  * The beginning of the Mincerfat render tick.
  * @see #RENDER_POST
  */
-public static final Tick RENDER_PRE = new Tick();
+public static final Tick RENDER_PRE = new Tick("RenderPre");
 /**
  * The end of the Mincerfat render tick.
  * @see #RENDER_PRE
  */
-public static final Tick RENDER_POST = new Tick();
+public static final Tick RENDER_POST = new Tick("RenderPost");
 
-private final Queue<ListenerContainer> tickMap;
-private final Queue<Runnable> incomingRunnables;
+private static final String BUDGET_PROPERTY = "chungamod.tickBudget.";
+private static final String OVERFLOW_PROPERTY = "chungamod.tickOverflow.";
+/**
+ * Capacity of the ring of incoming runnables.
+ */
+private static final int RUNNABLE_CAPACITY = 1024;
+/**
+ * Time a thread waits before retrying to add a runnable to a full ring under {@link OverflowPolicy#BLOCK}.
+ */
+private static final long BLOCK_PARK_NANOS = 50000;
 
+/**
+ * Each level of the timing wheel has {@code 2^WHEEL_BITS} slots.
+ */
+private static final int WHEEL_BITS = 6;
+private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+private static final int WHEEL_LEVELS = 4;
+/**
+ * Listeners scheduled this many ticks or more in the future are kept in the overflow list until they are in range of the wheel.
+ */
+private static final int WHEEL_SPAN = 1 << WHEEL_BITS * WHEEL_LEVELS;
+/**
+ * Index of the list of listeners to be called during the current or next iteration.
+ */
+private static final int DUE = WHEEL_SIZE * WHEEL_LEVELS;
+/**
+ * Index of the list of listeners scheduled beyond the span of the wheel.
+ */
+private static final int OVERFLOW = DUE + 1;
+
+private final String name;
+private final ListenerContainer[] heads;
+private final ListenerContainer[] tails;
+private final MPSCRing<Runnable> incomingRunnables;
+private final Queue<Runnable> spilledRunnables;
+private final AtomicInteger spilledSize;
+private final AtomicLong totalSpilled;
+private final AtomicLong totalDropped;
+
+private ListenerContainer pool;
 private int tick;
+private volatile long budget;
+private long lastDuration;
+private long maxDuration;
+private int lastDeferred;
+private long totalDeferred;
+private volatile TickProfiler profiler;
+private volatile OverflowPolicy overflowPolicy = OverflowPolicy.SPILL;
+private volatile Thread thread;
+private volatile Runnable[] endListeners = new Runnable[0];
+private int queueHighWaterMark;
 private static Logger log;
 
 static void init(Logger logIn) {
 	log = logIn;
 }
 
-private Tick() {
-	tickMap = new PriorityQueue<>();
-	incomingRunnables = new ConcurrentLinkedQueue<>();
+@Init
+private static void initProperties() {
+	for(Tick tick:new Tick[] {MAIN, CLIENT_POST, RENDER_PRE, RENDER_POST}) {
+		String budgetKey = BUDGET_PROPERTY + tick.name;
+		Chung.SYSTEM.addProperty(budgetKey, "0", value -> {
+			try {
+				tick.budget = Long.parseLong(value);
+			} catch(NumberFormatException e) {
+				Chung.SYSTEM.setProperty(budgetKey, null);
+			}
+		});
+		String overflowKey = OVERFLOW_PROPERTY + tick.name;
+		Chung.SYSTEM.addProperty(overflowKey, OverflowPolicy.SPILL.name(), value -> {
+			try {
+				tick.overflowPolicy = OverflowPolicy.valueOf(value.toUpperCase());
+			} catch(IllegalArgumentException e) {
+				Chung.SYSTEM.setProperty(overflowKey, null);
+			}
+		});
+	}
+}
+
+private Tick(String name) {
+	this.name = name;
+	heads = new ListenerContainer[OVERFLOW + 1];
+	tails = new ListenerContainer[OVERFLOW + 1];
+	incomingRunnables = new MPSCRing<>(RUNNABLE_CAPACITY);
+	spilledRunnables = new ConcurrentLinkedQueue<>();
+	spilledSize = new AtomicInteger();
+	totalSpilled = new AtomicLong();
+	totalDropped = new AtomicLong();
 }
 
 @SubscribeEvent
@@ -76,69 +165,340 @@ public static void onTick(RenderTickEvent event) {
 }
 
 /**
- * Runs incoming Runnables, then notifies the tick listeners.
+ * Runs the incoming Runnables present when the tick starts, then notifies the tick listeners.
+ * Runnables added while runnables are running are run during the next tick.
  * If any listeners are scheduled for the current tick during iteration, they will be notified until none are.
+ * If this tick has a budget and it is exceeded, the remaining runnables and listeners are deferred to the next tick,
+ * where they are called before any newly scheduled listeners.
+ * At least one runnable and one listener are called each tick, if any are present.
+ * Finally, the end listeners are run.
  * @see #add(TickListener, int)
  * @see #run(Runnable)
+ * @see #setBudget(long)
  */
 private void onTick() {
 	tick++;
-	for(Runnable run = incomingRunnables.poll(); run != null; run = incomingRunnables.poll()) run.run();
+	long budget = this.budget;
+	TickProfiler profiler = this.profiler;
+	long start = System.nanoTime();
+	int deferred = 0;
+	if(thread == null) thread = Thread.currentThread();
+	int pending = incomingRunnables.size() + spilledSize.get();
+	if(pending > queueHighWaterMark) queueHighWaterMark = pending;
+	for(int i = 0; i < pending; i++) {
+		Runnable run = pollRunnable();
+		if(run == null) break;
+		run.run();
+		if(budget > 0 && System.nanoTime() - start >= budget) {
+			deferred += pending - i - 1;
+			break;
+		}
+	}
+	advance();
 	ListenerContainer listener;
-	while((listener = tickMap.peek()) != null && listener.tick <= tick) {
-		tickMap.poll();
-		nextTick(listener.listener, listener.listener.onTick());
+	boolean called = false;
+	while((listener = heads[DUE]) != null) {
+		if(called && budget > 0 && System.nanoTime() - start >= budget) {
+			for(; listener != null; listener = listener.next) if(!listener.cancelled) deferred++;
+			break;
+		}
+		if((heads[DUE] = listener.next) == null) tails[DUE] = null;
+		listener.next = null;
+		if(listener.cancelled) recycle(listener);
+		else {
+			called = true;
+			if(profiler == null) nextTick(listener, listener.listener.onTick());
+			else {
+				long listenerStart = System.nanoTime();
+				int tickIn = listener.listener.onTick();
+				profiler.record(listener.listener, System.nanoTime() - listenerStart);
+				nextTick(listener, tickIn);
+			}
+		}
+	}
+	Runnable[] endListeners = this.endListeners;
+	for(int i = 0; i < endListeners.length; i++) endListeners[i].run();
+	long duration = System.nanoTime() - start;
+	lastDuration = duration;
+	if(duration > maxDuration) maxDuration = duration;
+	lastDeferred = deferred;
+	if(profiler != null) profiler.recordTick(duration);
+	if(deferred != 0) {
+		totalDeferred += deferred;
+		log.trace("{} tick exceeded budget, deferred {}", name, deferred);
 	}
 }
 
 /**
- * Schedules a listener for a future tick.
- * @param listener the listener
+ * Removes the next incoming runnable, taking from the spill queue once the ring is empty.
+ * @return the next runnable, or {@code null} if there are none
+ */
+private Runnable pollRunnable() {
+	Runnable run = incomingRunnables.poll();
+	if(run == null && (run = spilledRunnables.poll()) != null) spilledSize.decrementAndGet();
+	return run;
+}
+
+/**
+ * Moves listeners scheduled for the current tick to the due list, cascading higher levels of the wheel down when their slots are reached.
+ */
+private void advance() {
+	if((tick & WHEEL_SPAN - 1) == 0) cascade(OVERFLOW);
+	int level = 0;
+	while(level < WHEEL_LEVELS - 1 && (tick >>> WHEEL_BITS * level & WHEEL_MASK) == 0) level++;
+	for(; level > 0; level--) cascade(level * WHEEL_SIZE + (tick >>> WHEEL_BITS * level & WHEEL_MASK));
+	int slot = tick & WHEEL_MASK;
+	ListenerContainer head = heads[slot];
+	if(head != null) {
+		if(tails[DUE] == null) heads[DUE] = head;
+		else tails[DUE].next = head;
+		tails[DUE] = tails[slot];
+		heads[slot] = null;
+		tails[slot] = null;
+	}
+}
+
+/**
+ * Reschedules each listener in a list, discarding cancelled listeners.
+ * @param list index of list
+ */
+private void cascade(int list) {
+	ListenerContainer listener = heads[list];
+	heads[list] = null;
+	tails[list] = null;
+	while(listener != null) {
+		ListenerContainer next = listener.next;
+		listener.next = null;
+		if(listener.cancelled) recycle(listener);
+		else schedule(listener);
+		listener = next;
+	}
+}
+
+/**
+ * Places a container in the list for its scheduled tick.
+ * @param listener the container
+ */
+private void schedule(ListenerContainer listener) {
+	int delta = listener.tick - tick;
+	int list;
+	if(delta <= 0) list = DUE;
+	else if(delta >= WHEEL_SPAN) list = OVERFLOW;
+	else {
+		int level = (31 - Integer.numberOfLeadingZeros(delta)) / WHEEL_BITS;
+		list = level * WHEEL_SIZE + (listener.tick >>> WHEEL_BITS * level & WHEEL_MASK);
+	}
+	if(tails[list] == null) heads[list] = listener;
+	else tails[list].next = listener;
+	tails[list] = listener;
+}
+
+/**
+ * Reschedules a container for a future tick, or returns it to the pool.
+ * @param listener the container
  * @param tickIn the number of ticks in the future to call the listener
  */
-private void nextTick(TickListener listener, int tickIn) {
-	if(tickIn >= 0) tickMap.add(new ListenerContainer(listener, tick + tickIn));
-	else log.trace("Removing tick listener " + listener);
+private void nextTick(ListenerContainer listener, int tickIn) {
+	if(listener.cancelled) recycle(listener);
+	else if(tickIn >= 0) {
+		listener.tick = tick + tickIn;
+		schedule(listener);
+	} else {
+		log.trace("Removing tick listener " + listener.listener);
+		recycle(listener);
+	}
+}
+
+/**
+ * Gets a container from the pool, or creates one if the pool is empty.
+ * @param listener the listener
+ * @return a container for the listener
+ */
+private ListenerContainer obtain(TickListener listener) {
+	ListenerContainer container = pool;
+	if(container == null) return new ListenerContainer(listener);
+	pool = container.next;
+	container.next = null;
+	container.listener = listener;
+	container.cancelled = false;
+	return container;
+}
+
+/**
+ * Returns a container to the pool.  Any {@link Registration} of the container becomes inactive.
+ * @param listener the container
+ */
+private void recycle(ListenerContainer listener) {
+	listener.listener = null;
+	listener.generation++;
+	listener.next = pool;
+	pool = listener;
 }
 
 /**
  * Schedules a listener for a future tick.
  * @param listener the listener
  * @param futureTicks the number of ticks in the future to call the listener
+ * @return a {@link Registration} that can cancel the listener
  */
-public void add(TickListener listener, int tick) {
+public Registration add(TickListener listener, int tick) {
 	log.trace("Adding tick listener " + listener);
-	nextTick(listener, tick);
+	if(tick < 0) {
+		log.trace("Removing tick listener " + listener);
+		return Registration.INACTIVE;
+	}
+	ListenerContainer container = obtain(listener);
+	nextTick(container, tick);
+	return new Registration(container);
 }
 
 /**
  * Schedules a listener to be called during the next tick, or if listeners are currently being called, during this tick.
  * @param listener the listener
+ * @return a {@link Registration} that can cancel the listener
  */
-public void add(TickListener listener) {
-	add(listener, 0);
+public Registration add(TickListener listener) {
+	return add(listener, 0);
 }
 
 /**
  * Removes a listener if it is scheduled for a future tick.
+ * This method searches every scheduled listener;
+ * {@link Registration#cancel()} should be preferred when the listener's registration is available.
  * @param listener listener to be removed
  */
 public void remove(TickListener listener) {
 	log.trace("Removing tick listener {}", listener);
-	Iterator<ListenerContainer> iter = tickMap.iterator();
-	while(iter.hasNext()) if(iter.next().listener.equals(listener)) {
-		iter.remove();
-		return;
+	for(int list = 0; list <= OVERFLOW; list++) {
+		for(ListenerContainer container = heads[list]; container != null; container = container.next)
+				if(!container.cancelled && container.listener.equals(listener)) {
+			container.cancelled = true;
+			return;
+		}
 	}
 	log.trace("Listener not found");
 }
 
+/**
+ * Removes all scheduled listeners matching a filter.
+ * @param filter returns {@code true} for listeners to be removed
+ * @return the number of listeners removed
+ */
+public int removeAll(Predicate<? super TickListener> filter) {
+	int removed = 0;
+	for(int list = 0; list <= OVERFLOW; list++) {
+		for(ListenerContainer container = heads[list]; container != null; container = container.next)
+				if(!container.cancelled && filter.test(container.listener)) {
+			container.cancelled = true;
+			removed++;
+		}
+	}
+	log.trace("Removed {} tick listeners", removed);
+	return removed;
+}
+
+/**
+ * Adds a {@link Runnable} to be run at the end of every tick, after the tick listeners due that tick.
+ * End listeners are not subject to the budget of this tick.  This method is thread-safe.
+ * @param listener the end listener
+ */
+public synchronized void addEndListener(Runnable listener) {
+	if(listener == null) throw new NullPointerException();
+	Runnable[] newEndListeners = Arrays.copyOf(endListeners, endListeners.length + 1);
+	newEndListeners[endListeners.length] = listener;
+	endListeners = newEndListeners;
+}
+
+/**
+ * Removes a {@link Runnable} from being run at the end of every tick.  This method is thread-safe.
+ * @param listener the end listener
+ * @return {@code true} if the end listener was found and removed
+ */
+public synchronized boolean removeEndListener(Runnable listener) {
+	int index = Util.indexOf(endListeners, listener);
+	if(index < 0) return false;
+	Runnable[] newEndListeners = new Runnable[endListeners.length - 1];
+	System.arraycopy(endListeners, 0, newEndListeners, 0, index);
+	System.arraycopy(endListeners, index + 1, newEndListeners, index, newEndListeners.length - index);
+	endListeners = newEndListeners;
+	return true;
+}
+
 /**
  * Schedules a {@link Runnable} to be called on the next tick.  This method is thread-safe.
- * @param run
+ * Runnables are added to a bounded ring without allocating.
+ * If the ring is full, the {@link OverflowPolicy} of this tick determines what happens to the runnable.
+ * @param run the runnable
+ * @return {@code true} if the runnable was scheduled; {@code false} if it was dropped
+ * @see #setOverflowPolicy(OverflowPolicy)
+ */
+public boolean run(Runnable run) {
+	OverflowPolicy policy = overflowPolicy;
+	if((policy != OverflowPolicy.SPILL || spilledSize.get() == 0) && incomingRunnables.offer(run)) return true;
+	switch(policy) {
+	case DROP:
+		totalDropped.incrementAndGet();
+		return false;
+	case BLOCK:
+		Thread tickThread = thread;
+		if(tickThread != null && Thread.currentThread() != tickThread) {
+			while(!incomingRunnables.offer(run)) {
+				LockSupport.parkNanos(BLOCK_PARK_NANOS);
+				if(Thread.currentThread().isInterrupted()) {
+					spill(run);
+					break;
+				}
+			}
+			return true;
+		}
+	default:
+		spill(run);
+		return true;
+	}
+}
+
+/**
+ * Schedules a {@link Runnable} that must not be lost to be called on the next tick.  This method is thread-safe.
+ * Behaves like {@link #run(Runnable)}, except that under {@link OverflowPolicy#DROP} the runnable is spilled instead of dropped.
+ * Used for completions handed off by Chungamod itself, such as those of asynchronous tasks and client thread event listeners.
+ * @param run the runnable
+ */
+public void runRequired(Runnable run) {
+	if(overflowPolicy != OverflowPolicy.DROP) run(run);
+	else if(!incomingRunnables.offer(run)) spill(run);
+}
+
+private void spill(Runnable run) {
+	if(run == null) throw new NullPointerException();
+	spilledRunnables.offer(run);
+	spilledSize.incrementAndGet();
+	totalSpilled.incrementAndGet();
+}
+
+/**
+ * Sets what happens when a runnable is added through {@link #run(Runnable)} while the ring of incoming runnables is full.
+ * This value is also set by the Chungamod property {@code chungamod.tickOverflow.<name>}.
+ * @param policy the overflow policy
+ */
+public void setOverflowPolicy(OverflowPolicy policy) {
+	if(policy == null) throw new NullPointerException();
+	overflowPolicy = policy;
+}
+
+/**
+ * Gets what happens when a runnable is added through {@link #run(Runnable)} while the ring of incoming runnables is full.
+ * @return the overflow policy
+ */
+public OverflowPolicy getOverflowPolicy() {
+	return overflowPolicy;
+}
+
+/**
+ * Determines if the current thread is the thread this tick runs on.
+ * @return {@code true} if this tick has run and the current thread is the thread it ran on
  */
-public void run(Runnable run) {
-	incomingRunnables.offer(run);
+public boolean isTickThread() {
+	return Thread.currentThread() == thread;
 }
 
 /**
@@ -150,27 +510,212 @@ public int current() {
 }
 
 /**
- * Contains a listener and the tick it is scheduled for.
+ * Sets the amount of time each tick may spend calling runnables and listeners before deferring the rest to the next tick.
+ * While a budget is set, a listener returning zero may be called again during the next tick rather than the current one.
+ * This value is also set by the Chungamod property {@code chungamod.tickBudget.<name>}.
+ * @param nanos the budget in nanoseconds, or zero or a negative number for no budget
+ */
+public void setBudget(long nanos) {
+	budget = nanos;
+}
+
+/**
+ * Gets the amount of time each tick may spend calling runnables and listeners before deferring the rest to the next tick.
+ * @return the budget in nanoseconds, or zero or a negative number if there is no budget
+ */
+public long getBudget() {
+	return budget;
+}
+
+/**
+ * Gets the amount of time the last tick spent calling runnables and listeners.
+ * @return duration of the last tick in nanoseconds
+ */
+public long getLastDuration() {
+	return lastDuration;
+}
+
+/**
+ * Gets the longest amount of time a tick has spent calling runnables and listeners since statistics were last reset.
+ * @return duration of the longest tick in nanoseconds
+ * @see #resetStatistics()
+ */
+public long getMaxDuration() {
+	return maxDuration;
+}
+
+/**
+ * Gets the number of runnables and listeners deferred by the last tick for exceeding its budget.
+ * @return the number of runnables and listeners deferred by the last tick
+ */
+public int getLastDeferred() {
+	return lastDeferred;
+}
+
+/**
+ * Gets the total number of runnables and listeners deferred for exceeding the budget since statistics were last reset.
+ * A runnable or listener deferred through multiple ticks is counted once for each tick.
+ * @return the total number of deferred runnables and listeners
+ * @see #resetStatistics()
+ */
+public long getTotalDeferred() {
+	return totalDeferred;
+}
+
+/**
+ * Gets the highest number of incoming runnables waiting at the start of a tick since statistics were last reset.
+ * @return the high-water mark of the incoming runnable queue
+ * @see #resetStatistics()
+ */
+public int getQueueHighWaterMark() {
+	return queueHighWaterMark;
+}
+
+/**
+ * Gets the total number of runnables added to the unbounded spill queue because the ring was full since statistics were last reset.
+ * @return the total number of spilled runnables
+ * @see #resetStatistics()
+ */
+public long getTotalSpilled() {
+	return totalSpilled.get();
+}
+
+/**
+ * Gets the total number of runnables dropped because the ring was full since statistics were last reset.
+ * @return the total number of dropped runnables
+ * @see #resetStatistics()
+ */
+public long getTotalDropped() {
+	return totalDropped.get();
+}
+
+/**
+ * Resets the maximum tick duration, total deferred count, queue high-water mark, and spilled and dropped counts.
+ */
+public void resetStatistics() {
+	maxDuration = 0;
+	totalDeferred = 0;
+	queueHighWaterMark = 0;
+	totalSpilled.set(0);
+	totalDropped.set(0);
+}
+
+/**
+ * Starts or stops profiling the time taken by this tick and each of its listeners.
+ * Starting profiling while this tick is already being profiled has no effect.
+ * @param profiling {@code true} to start profiling, or {@code false} to stop profiling and discard the profile
+ * @see TickProfiler
+ */
+public void setProfiling(boolean profiling) {
+	if(!profiling) profiler = null;
+	else if(profiler == null) profiler = new TickProfiler(this);
+}
+
+/**
+ * Gets the profiler of this tick.
+ * @return the profiler of this tick, or {@code null} if this tick is not being profiled
+ */
+public TickProfiler getProfiler() {
+	return profiler;
+}
+
+/**
+ * Gets the name of this tick.
+ * @return the name of this tick
+ */
+public String getName() {
+	return name;
+}
+
+@Override
+public String toString() {
+	return name + " tick";
+}
+
+/**
+ * Determines what happens to a runnable added through {@link Tick#run(Runnable)} while the ring of incoming runnables is full.
+ * @author Magnileve
+ */
+public static enum OverflowPolicy {
+	/**
+	 * The calling thread waits until there is room in the ring.
+	 * If this tick has not run yet, the calling thread is the tick thread, or it is interrupted while waiting,
+	 * the runnable is spilled instead, since waiting could otherwise never end.
+	 */
+	BLOCK,
+	/**
+	 * The runnable is discarded, and {@link Tick#run(Runnable)} returns {@code false}.
+	 * Runnables added through {@link Tick#runRequired(Runnable)}, including completions of asynchronous tasks
+	 * and calls to client thread event listeners, are spilled instead.
+	 */
+	DROP,
+	/**
+	 * The runnable is added to an unbounded queue that is run after the ring.
+	 * Later runnables are also spilled until the spill queue is empty, so runnables from each thread keep their order.
+	 */
+	SPILL;
+}
+
+/**
+ * Contains a listener, the tick it is scheduled for, and the next container in its slot of the timing wheel.
+ * Containers are reused after their listener is removed, incrementing their generation.
  * @author Magnileve
  */
-protected static class ListenerContainer implements Comparable<ListenerContainer> {
+protected static class ListenerContainer {
 
-private final TickListener listener;
-private final int tick;
+private TickListener listener;
+private int tick;
+private ListenerContainer next;
+private int generation;
+private boolean cancelled;
 
-public ListenerContainer(TickListener listener, int tick) {
+public ListenerContainer(TickListener listener) {
 	this.listener = listener;
-	this.tick = tick;
 }
 
+}
+
+/**
+ * Cancels a listener scheduled by {@link Tick#add(TickListener, int)} in constant time.
+ * A registration becomes inactive when it is cancelled or when its listener returns a negative number.
+ * Like the rest of {@code Tick}, this type is not thread-safe and should only be used on the thread calling listeners.
+ * @author Magnileve
+ */
+public static final class Registration {
+
 /**
- * @return positive if this listener is scheduled for a later tick than {@code o},
- * zero if the listeners are scheduled for the same tick,
- * or negative if this listener is scheduled for a sooner tick than {@code o}
+ * A registration that is never active.
  */
-@Override
-public int compareTo(ListenerContainer o) {
-	return tick - o.tick;
+public static final Registration INACTIVE = new Registration(null);
+
+private final ListenerContainer container;
+private final int generation;
+
+private Registration(ListenerContainer container) {
+	this.container = container;
+	generation = container == null ? 0 : container.generation;
+}
+
+/**
+ * Indicates if the listener of this registration is still scheduled.
+ * @return {@code true} if the listener has not been cancelled or removed; {@code false} otherwise
+ */
+public boolean isActive() {
+	return container != null && container.generation == generation && !container.cancelled;
+}
+
+/**
+ * Cancels the listener of this registration.
+ * If the listener is currently being called, it will not be rescheduled.
+ * @return {@code true} if the listener was active and has been cancelled; {@code false} otherwise
+ */
+public boolean cancel() {
+	if(isActive()) {
+		log.trace("Removing tick listener {}", container.listener);
+		container.cancelled = true;
+		return true;
+	}
+	return false;
 }
 
 }
@@ -0,0 +1,315 @@
+package magnileve.chungamod;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONWriter;
+
+import magnileve.chungamod.Commands.Argument;
+import magnileve.chungamod.Commands.Command;
+import magnileve.chungamod.Commands.CommandArgumentException;
+import magnileve.chungamod.Commands.CommandFactory;
+import magnileve.chungamod.Commands.ContainsCommand;
+import magnileve.chungamod.modules.Module;
+import magnileve.chungamod.modules.ModuleID;
+import magnileve.chungamod.settings.AbstractSettingManager;
+import magnileve.chungamod.tasks.TaskByTickHolder;
+import magnileve.chungamod.util.LatencyHistogram;
+import magnileve.chungamod.util.MCUtil;
+import magnileve.chungamod.util.json.GoodLookingJSONWriter;
+
+/**
+ * Records the number of calls and a latency histogram for each type of listener of a {@link Tick},
+ * as well as a latency histogram of the tick itself.
+ * Listeners are attributed to the module declaring them when one can be found.
+ * Profiling is controlled through the command {@code tickprofiler},
+ * which can dump a summary to chat or export every profile as JSON to the Chungamod directory.
+ * @author Magnileve
+ * @see Tick#setProfiling(boolean)
+ */
+@ContainsCommand
+public class TickProfiler {
+
+private static final String PROFILES_DIRECTORY = "profiles";
+private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+private static final int DUMP_LISTENERS = 5;
+private static final Tick[] TICKS = {Tick.MAIN, Tick.CLIENT_POST, Tick.RENDER_PRE, Tick.RENDER_POST};
+
+private final Tick tick;
+private final Map<Class<?>, ListenerProfile> listeners;
+private final LatencyHistogram tickLatency;
+
+private long startTime;
+
+TickProfiler(Tick tick) {
+	this.tick = tick;
+	listeners = new HashMap<>();
+	tickLatency = new LatencyHistogram();
+	startTime = System.currentTimeMillis();
+}
+
+/**
+ * Records a call to a listener.
+ * Listeners of tasks created by {@link magnileve.chungamod.tasks.Tasks Tasks} are recorded as their internal listener.
+ * @param listener the listener
+ * @param nanos time taken by the call in nanoseconds
+ */
+void record(TickListener listener, long nanos) {
+	Class<?> type = (listener instanceof TaskByTickHolder ? ((TaskByTickHolder) listener).getTickListener() : listener).getClass();
+	ListenerProfile profile = listeners.get(type);
+	if(profile == null) listeners.put(type, profile = new ListenerProfile(type));
+	profile.latency.record(nanos);
+}
+
+/**
+ * Records the duration of a tick.
+ * @param nanos time taken by the tick in nanoseconds
+ */
+void recordTick(long nanos) {
+	tickLatency.record(nanos);
+}
+
+/**
+ * Gets the tick this profiler records.
+ * @return the tick this profiler records
+ */
+public Tick getTick() {
+	return tick;
+}
+
+/**
+ * Gets the latency histogram of each tick.
+ * @return the latency histogram of each tick
+ */
+public LatencyHistogram getTickLatency() {
+	return tickLatency;
+}
+
+/**
+ * Gets the profiles of each listener type, sorted by total time in descending order.
+ * @return a new list of listener profiles
+ */
+public List<ListenerProfile> getListeners() {
+	List<ListenerProfile> list = new ArrayList<>(listeners.values());
+	list.sort((o1, o2) -> Long.compare(o2.latency.getTotal(), o1.latency.getTotal()));
+	return list;
+}
+
+/**
+ * Removes all recorded values.
+ */
+public void reset() {
+	listeners.clear();
+	tickLatency.reset();
+	startTime = System.currentTimeMillis();
+}
+
+/**
+ * Writes this profile as a JSON object.
+ * @param w writes JSON
+ */
+public void writeJSON(JSONWriter w) {
+	w.object().key("milliseconds").value(System.currentTimeMillis() - startTime).key("ticks");
+	writeHistogram(w, tickLatency);
+	w.key("listeners").array();
+	for(ListenerProfile profile:getListeners()) {
+		ModuleID<?> m = profile.getOwner();
+		w.object().key("type").value(profile.type.getName());
+		if(m != null) w.key("module").value(m.getName()).key("plugin").value(m.getPluginID());
+		w.key("latency");
+		writeHistogram(w, profile.latency);
+		w.endObject();
+	}
+	w.endArray().endObject();
+}
+
+private static void writeHistogram(JSONWriter w, LatencyHistogram histogram) {
+	w.object()
+			.key("count").value(histogram.getCount())
+			.key("totalNanos").value(histogram.getTotal())
+			.key("meanNanos").value(histogram.getMean())
+			.key("minNanos").value(histogram.getMin())
+			.key("p50Nanos").value(histogram.getValueAtPercentile(50))
+			.key("p90Nanos").value(histogram.getValueAtPercentile(90))
+			.key("p99Nanos").value(histogram.getValueAtPercentile(99))
+			.key("p999Nanos").value(histogram.getValueAtPercentile(99.9))
+			.key("maxNanos").value(histogram.getMax())
+			.endObject();
+}
+
+/**
+ * Finds the module that declares a listener type.
+ * For lambdas, the declaring class of the lambda is checked.
+ * Otherwise, the type and each of its enclosing types are checked.
+ * @param listenerType a listener type
+ * @return the module declaring the listener type, or {@code null} if one is not found
+ */
+public static ModuleID<?> getOwner(Class<?> listenerType) {
+	Class<?> type = listenerType;
+	String name = type.getName();
+	int lambdaIndex = name.indexOf("$$Lambda");
+	if(lambdaIndex >= 0) try {
+		type = Class.forName(name.substring(0, lambdaIndex), false, type.getClassLoader());
+	} catch(ClassNotFoundException e) {
+		return null;
+	}
+	for(; type != null; type = type.getEnclosingClass()) if(Module.class.isAssignableFrom(type)) {
+		ModuleID<?> m = Chung.US.getModule(type.asSubclass(Module.class));
+		if(m != null) return m;
+	}
+	return null;
+}
+
+private static String formatNanos(double nanos) {
+	return String.format("%.3fms", nanos / 1000000);
+}
+
+/**
+ * Builds a summary of each active profiler.
+ * @return a message summarizing each active profiler
+ */
+private static String dump() {
+	StringBuilder str = new StringBuilder("\n----- Tick Profile: -----");
+	boolean found = false;
+	for(Tick tick:TICKS) {
+		TickProfiler profiler = tick.getProfiler();
+		if(profiler == null) continue;
+		found = true;
+		LatencyHistogram h = profiler.tickLatency;
+		str.append('\n').append(tick.getName()).append(": ").append(h.getCount()).append(" ticks, mean ")
+				.append(formatNanos(h.getMean())).append(", p99 ").append(formatNanos(h.getValueAtPercentile(99)))
+				.append(", max ").append(formatNanos(h.getMax()));
+		List<ListenerProfile> listeners = profiler.getListeners();
+		for(int i = 0; i < listeners.size() && i < DUMP_LISTENERS; i++) {
+			ListenerProfile profile = listeners.get(i);
+			h = profile.latency;
+			str.append("\n- ").append(profile.getName()).append(": ").append(h.getCount()).append(" calls, mean ")
+					.append(formatNanos(h.getMean())).append(", p99 ").append(formatNanos(h.getValueAtPercentile(99)))
+					.append(", max ").append(formatNanos(h.getMax()));
+		}
+	}
+	return found ? str.toString() : "Tick profiler is not running";
+}
+
+/**
+ * Exports each active profiler as JSON to a new file in the Chungamod profiles directory.
+ * @return path of the new file
+ * @throws IOException if an I/O error occurs
+ */
+private static Path export() throws IOException {
+	Path dir = Paths.get(Chung.CHUNGAMOD_DIRECTORY, PROFILES_DIRECTORY);
+	if(!Files.isDirectory(dir)) Files.createDirectories(dir);
+	Path file = dir.resolve("tick-" + LocalDateTime.now().format(FILE_TIME_FORMAT) + ".json");
+	try(Writer write = Files.newBufferedWriter(file)) {
+		int indent = AbstractSettingManager.getJSONIndent();
+		JSONWriter w = indent < 0 ? new JSONWriter(write) : new GoodLookingJSONWriter(write, indent);
+		w.object();
+		for(Tick tick:TICKS) {
+			TickProfiler profiler = tick.getProfiler();
+			if(profiler == null) continue;
+			w.key(tick.getName());
+			profiler.writeJSON(w);
+		}
+		w.endObject();
+	}
+	return file;
+}
+
+@CommandFactory(name = "tickprofiler", description = "Profiles the time taken by tick listeners")
+@Argument(index = 0, name = "action", description = "start, stop, reset, dump, or export")
+static Command tickProfilerCommand() {
+	return args -> {
+		switch(args[0].toLowerCase()) {
+		case "start":
+			return () -> {
+				for(Tick tick:TICKS) tick.setProfiling(true);
+				MCUtil.sendMessage("Tick profiler started");
+			};
+		case "stop":
+			return () -> {
+				for(Tick tick:TICKS) tick.setProfiling(false);
+				MCUtil.sendMessage("Tick profiler stopped");
+			};
+		case "reset":
+			return () -> {
+				for(Tick tick:TICKS) if(tick.getProfiler() != null) tick.getProfiler().reset();
+				MCUtil.sendMessage("Tick profiler reset");
+			};
+		case "dump":
+			return () -> MCUtil.sendMessage(dump());
+		case "export":
+			return () -> {
+				try {
+					MCUtil.sendMessage("Tick profile exported to " + export());
+				} catch(IOException e) {
+					MCUtil.sendMessage("Unable to export tick profile: " + e.getMessage());
+				}
+			};
+		default:
+			throw new CommandArgumentException("Unknown action: " + args[0]);
+		}
+	};
+}
+
+/**
+ * Contains the latency histogram of a listener type.
+ * @author Magnileve
+ */
+public static class ListenerProfile {
+	private final Class<?> type;
+	private final LatencyHistogram latency;
+
+	private ModuleID<?> owner;
+	private boolean ownerResolved;
+
+	private ListenerProfile(Class<?> type) {
+		this.type = type;
+		latency = new LatencyHistogram();
+	}
+
+	/**
+	 * @return the listener type
+	 */
+	public Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * @return the latency histogram of calls to listeners of this type
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return the module declaring this listener type, or {@code null} if one is not found
+	 * @see TickProfiler#getOwner(Class)
+	 */
+	public ModuleID<?> getOwner() {
+		if(!ownerResolved) {
+			owner = TickProfiler.getOwner(type);
+			ownerResolved = true;
+		}
+		return owner;
+	}
+
+	/**
+	 * @return the name of the owning module followed by the simple name of the listener type,
+	 * or the name of the listener type if there is no owning module
+	 */
+	public String getName() {
+		ModuleID<?> m = getOwner();
+		return m == null ? type.getName() : m.getName() + " (" + type.getSimpleName() + ")";
+	}
+}
+
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package magnileve.chungamod.events;
+
+/**
+ * An event that can be cancelled by its listeners.
+ * When a {@code CancellableEvent} is posted to an {@link EventManager},
+ * no further listener methods are called once it is cancelled.
+ * Listener methods are called in order of {@link OnEvent#priority()},
+ * so higher priority listeners are able to cancel an event before lower priority listeners receive it.
+ * If an event is cancelled before being posted, no listener methods are called.
+ * @author Magnileve
+ */
+public interface CancellableEvent {
+
+/**
+ * Determines if this event has been cancelled.
+ * @return {@code true} if this event has been cancelled
+ */
+public boolean isCancelled();
+
+/**
+ * Cancels this event, preventing it from being sent to any further listeners.
+ */
+public void cancel();
+
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+package magnileve.chungamod.events;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+import magnileve.chungamod.Tick;
+
+/**
+ * Determines how posts of an event type are folded together before being sent to listeners once per {@link Tick}.
+ * Under a latest policy, only the last event posted for each key during a tick is sent to listeners.
+ * Under a batch policy, all events posted during a tick are sent together as an {@link EventBatch}.
+ * @param <T> the event type
+ * @author Magnileve
+ * @see EventManager#registerEvent(Class, CoalescingPolicy)
+ */
+public final class CoalescingPolicy<T> {
+
+private static final Function<Object, Object> SINGLE_KEY = event -> null;
+
+private final Function<? super T, ?> key;
+private final Tick tick;
+
+private CoalescingPolicy(Function<? super T, ?> key, Tick tick) {
+	this.key = key;
+	this.tick = Objects.requireNonNull(tick);
+}
+
+/**
+ * Creates a policy that sends only the last event posted during a tick.
+ * @param <T> the event type
+ * @param tick the tick events are sent during
+ * @return a new latest policy
+ */
+public static <T> CoalescingPolicy<T> latest(Tick tick) {
+	return new CoalescingPolicy<>(SINGLE_KEY, tick);
+}
+
+/**
+ * Creates a policy that sends the last event posted during a tick for each key,
+ * in the order each key was first posted during the tick.
+ * @param <T> the event type
+ * @param key maps an event to its key
+ * @param tick the tick events are sent during
+ * @return a new latest policy
+ */
+public static <T> CoalescingPolicy<T> latest(Function<? super T, ?> key, Tick tick) {
+	return new CoalescingPolicy<>(Objects.requireNonNull(key), tick);
+}
+
+/**
+ * Creates a policy that sends all events posted during a tick together as an {@link EventBatch}.
+ * Listener methods for an event type with a batch policy take an {@code EventBatch} parameter
+ * and declare the event type in {@link OnEvent#value()}.
+ * @param <T> the event type
+ * @param tick the tick events are sent during
+ * @return a new batch policy
+ */
+public static <T> CoalescingPolicy<T> batch(Tick tick) {
+	return new CoalescingPolicy<>(null, tick);
+}
+
+/**
+ * Determines if this policy sends events as batches.
+ * @return {@code true} if this is a batch policy; {@code false} if this is a latest policy
+ */
+public boolean isBatch() {
+	return key == null;
+}
+
+/**
+ * Gets the tick events are sent during.
+ * @return the tick events are sent during
+ */
+public Tick getTick() {
+	return tick;
+}
+
+/**
+ * Gets the key of an event under a latest policy.
+ * @param event the event
+ * @return the key of the event
+ */
+Object getKey(T event) {
+	return key.apply(event);
+}
+
+@Override
+public String toString() {
+	return (isBatch() ? "Batch" : "Latest") + " coalescing policy for " + tick;
+}
+
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+package magnileve.chungamod.events;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contains the events of a type posted during a tick, sent to listeners of an event type registered with a batch {@link CoalescingPolicy}.
+ * @param <T> the event type
+ * @author Magnileve
+ */
+public final class EventBatch<T> {
+
+private final Class<T> eventType;
+private final List<T> events;
+
+EventBatch(Class<T> eventType, List<T> events) {
+	this.eventType = eventType;
+	this.events = Collections.unmodifiableList(events);
+}
+
+/**
+ * Gets the type of the events in this batch.
+ * @return the event type
+ */
+public Class<T> getEventType() {
+	return eventType;
+}
+
+/**
+ * Gets the events in this batch in the order they were posted.
+ * @return an unmodifiable list of events
+ */
+public List<T> getEvents() {
+	return events;
+}
+
+/**
+ * Gets the number of events in this batch.
+ * @return the number of events in this batch
+ */
+public int size() {
+	return events.size();
+}
+
+@Override
+public String toString() {
+	return "Batch of " + events.size() + " " + eventType.getName();
+}
+
+}
\ No newline at end of file
@@ -1,43 +1,97 @@
 package magnileve.chungamod.events;
 
 import java.lang.annotation.AnnotationFormatError;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.Logger;
 
+import magnileve.chungamod.Chung;
+import magnileve.chungamod.Tick;
 import magnileve.chungamod.util.ArrayBuildList;
 import magnileve.chungamod.util.Bucket;
+import magnileve.chungamod.util.InheritanceMap;
 import magnileve.chungamod.util.Util;
+import net.minecraft.client.Minecraft;
 
 /**
  * The {@code EventManager} allows types to be registered as events and
  * listeners to be registered for posted events.
  * Event types and listeners do not have to inherit any types.
  * Listener methods are identified through annotations and parameter type.
+ * Listener methods are called through invokers generated when listeners are added,
+ * and each event type is posted from an immutable snapshot of its listeners that is replaced when listeners are added or removed.
+ * An event is posted to the listeners of every registered event type its class inherits,
+ * in order of inheritance distance from the class of the event.
+ * The chain of listeners for each class of posted events is resolved once and cached until listeners or event types change.
+ * Listener methods are called in order of their {@link Priority}, and posting an event implementing {@link CancellableEvent}
+ * stops once the event is cancelled.
+ * Event types registered as asynchronous are posted on a worker thread in the order they were posted,
+ * and listener methods requiring the client thread are passed to {@link Tick#MAIN} when called from another thread.
+ * Event types registered with a {@link CoalescingPolicy} are folded and sent to listeners once per tick.
+ * Listeners added with {@link #addWeakListener(Object, Class)} do not prevent garbage collection,
+ * and their registrations are removed on the client thread after they are collected.
  * @author Magnileve
  * @see OnEvent
  */
 public class EventManager {
 
+private static final Comparator<Handler> HANDLER_ORDER = Comparator.comparing(handler -> handler.priority);
+private static final int CLEANUP_INTERVAL = 100;
+
 private final Logger log;
-private final ArrayBuildList<Collection<Bucket<Method[], Collection<Object>>>> methods;
+private final ArrayBuildList<Map<List<Method>, Bucket<ListenerMethod[], Collection<Object>>>> groups;
 private final ArrayBuildList<Class<?>> eventTypes;
+private final Map<WeakListener, WeakListener> weakListeners;
+private final ReferenceQueue<Object> staleListeners;
+
+private volatile Dispatch dispatch;
+private ExecutorService asyncExecutor;
+private volatile EventTracer tracer;
+private boolean cleanupScheduled;
 
 /**
  * Creates an {@code EventManager} with no registered events or listeners.
- * @param log trace logger for event posts and listener adding/removing
+ * If trace logging is enabled for {@code log}, the tracer is initially {@link EventTracer#logging(Logger)};
+ * otherwise, it is {@link EventTracer#NONE}.
+ * @param log logger for exceptions thrown by listeners of asynchronous events and for tracing
  */
 public EventManager(Logger log) {
 	this.log = log;
-	methods = new ArrayBuildList<>(Collection.class, 1);
+	tracer = log.isTraceEnabled() ? EventTracer.logging(log) : EventTracer.NONE;
+	groups = new ArrayBuildList<>(Map.class, 1);
 	eventTypes = new ArrayBuildList<>(new Class<?>[1]);
+	weakListeners = new HashMap<>();
+	staleListeners = new ReferenceQueue<>();
+	dispatch = new Dispatch(Util.CLASS_ARRAY_0, new Handler[0][], new boolean[0]);
 }
 
 /**
@@ -46,21 +100,53 @@ public EventManager(Logger log) {
  * @param eventType the type of event to be listened for
  * @throws IllegalArgumentException if the listener does not listen for the event type, or if the event type is not registered
  */
-public void addListener(Object listener, Class<?> eventType) {
-	log.trace("Adding event listener {} for {}", listener, eventType);
-	getCollection(listener, eventType).add(Objects.requireNonNull(listener));
+public synchronized void addListener(Object listener, Class<?> eventType) {
+	int index = getIndex(eventType);
+	getCollection(listener, index, true).add(Objects.requireNonNull(listener));
+	updateHandlers(index);
+	tracer.listenerAdded(listener, eventType);
+}
+
+/**
+ * Adds a listener for an event without preventing the listener from being garbage collected.
+ * Once the listener is collected, it stops receiving events, and its registrations are removed during a later {@link Tick#MAIN}.
+ * @param listener the listener
+ * @param eventType the type of event to be listened for
+ * @throws IllegalArgumentException if the listener does not listen for the event type, or if the event type is not registered
+ * @see #removeListener(Object, Class)
+ */
+public synchronized void addWeakListener(Object listener, Class<?> eventType) {
+	int index = getIndex(eventType);
+	Collection<Object> collection = getCollection(listener, index, true);
+	WeakListener weakListener = new WeakListener(Objects.requireNonNull(listener), staleListeners);
+	WeakListener prevWeakListener = weakListeners.putIfAbsent(weakListener, weakListener);
+	if(prevWeakListener != null) weakListener = prevWeakListener;
+	collection.add(weakListener);
+	weakListener.registrations++;
+	updateHandlers(index);
+	tracer.listenerAdded(listener, eventType);
+	if(!cleanupScheduled) cleanupScheduled = Tick.MAIN.run(() -> Tick.MAIN.add(this::cleanStaleListeners, CLEANUP_INTERVAL));
 }
 
 /**
- * Removes a listener for an event.
+ * Removes a listener for an event, whether it was added normally or weakly.
  * @param listener the listener
  * @param eventType the type of event to no longer be listened for
  * @return {@code true} if the listener was found and removed
  * @throws IllegalArgumentException if the listener does not listen for the event type, or if the event type is not registered
  */
-public boolean removeListener(Object listener, Class<?> eventType) {
-	log.trace("Removing event listener {} for {}", listener, eventType);
-	return getCollection(listener, eventType).remove(listener);
+public synchronized boolean removeListener(Object listener, Class<?> eventType) {
+	int index = getIndex(eventType);
+	Collection<Object> collection = getCollection(listener, index, false);
+	if(collection == null) return false;
+	if(!collection.remove(listener)) {
+		WeakListener weakListener = weakListeners.isEmpty() ? null : weakListeners.get(new WeakListener(listener, null));
+		if(weakListener == null || !collection.remove(weakListener)) return false;
+		if(--weakListener.registrations == 0) weakListeners.remove(weakListener);
+	}
+	updateHandlers(index);
+	tracer.listenerRemoved(listener, eventType);
+	return true;
 }
 
 /**
@@ -71,30 +157,215 @@ public boolean removeListener(Object listener, Class<?> eventType) {
  * @throws IllegalStateException if this event type has already been registered
  */
 public <T> EventPoster<T> registerEvent(Class<T> eventType) {
+	return registerEvent(eventType, false);
+}
+
+/**
+ * Registers an event type.
+ * If the event type is asynchronous, its poster returns immediately,
+ * and events are posted on a worker thread in the order they were given to the poster.
+ * @param <T> the event type
+ * @param eventType the {@link Class} instance of this event type
+ * @param async if events of this type should be posted asynchronously
+ * @return an {@link EventPoster} for this event type
+ * @throws IllegalStateException if this event type has already been registered
+ * @see OnEvent#clientThread()
+ */
+public synchronized <T> EventPoster<T> registerEvent(Class<T> eventType, boolean async) {
+	int index = register(eventType, false);
+	if(async) {
+		if(asyncExecutor == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			asyncExecutor = Executors.newCachedThreadPool(run -> {
+				Thread thread = new Thread(run, "Chungamod events #" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			Chung.SYSTEM.addShutdownHook(asyncExecutor::shutdownNow);
+		}
+		AsyncPoster poster = new AsyncPoster(index, asyncExecutor);
+		return poster::offer;
+	}
+	return event -> post(event, index);
+}
+
+/**
+ * Registers an event type whose posts are folded together according to a coalescing policy.
+ * Events are sent to listeners during the policy's tick following their post.
+ * Under a latest policy, events are posted as usual, including to listeners of inherited event types.
+ * Under a batch policy, an {@link EventBatch} is sent only to the listeners added for this event type,
+ * and events of other types are not posted to them.
+ * @param <T> the event type
+ * @param eventType the {@link Class} instance of this event type
+ * @param policy determines how events are folded together
+ * @return an {@link EventPoster} for this event type
+ * @throws IllegalStateException if this event type has already been registered
+ */
+public synchronized <T> EventPoster<T> registerEvent(Class<T> eventType, CoalescingPolicy<? super T> policy) {
+	Coalescer<T> coalescer = new Coalescer<>(register(eventType, policy.isBatch()), eventType, policy);
+	return coalescer::offer;
+}
+
+/**
+ * Adds an event type to the registered event types.
+ * @param eventType the event type
+ * @param batched if events of this type are sent to listeners as an {@link EventBatch}
+ * @return index of the event type
+ * @throws IllegalStateException if this event type has already been registered
+ */
+private int register(Class<?> eventType, boolean batched) {
 	if(eventTypes.contains(eventType)) throw new IllegalStateException(eventType + " is already registered");
 	int index = eventTypes.size();
 	eventTypes.add(eventType);
-	methods.add(new ArrayBuildList<>(Bucket.class, 1));
-	return event -> post(event, index);
+	groups.add(new LinkedHashMap<>());
+	Handler[][] newHandlers = Arrays.copyOf(dispatch.handlers, index + 1);
+	newHandlers[index] = new Handler[0];
+	boolean[] newBatched = Arrays.copyOf(dispatch.batched, index + 1);
+	newBatched[index] = batched;
+	dispatch = new Dispatch(eventTypes.toArray(), newHandlers, newBatched);
+	return index;
 }
 
 /**
- * Sends an event to all of its event type's registered listeners.
+ * Sends an event to all registered listeners of the event types inherited by the class of the event.
  * @param event the event
- * @param eventIndex index of event
+ * @param eventIndex index of the event type the event is posted as
  * @see #registerEvent(Class)
  */
 protected void post(Object event, int eventIndex) {
-	log.trace(() -> log.getMessageFactory().newMessage("Posting event " + event + " as " + eventTypes.get(eventIndex)));
-	Collection<Bucket<Method[], Collection<Object>>> allListeners = methods.get(eventIndex);
-	for(Bucket<Method[], Collection<Object>> group:allListeners) {
-		Method[] methods = group.getE1();
-		try {
-			for(Object obj:group.getE2().toArray()) for(int h = 0; h < methods.length; h++) methods[h].invoke(obj, event);
-		} catch (ReflectiveOperationException e) {
-			throw new RuntimeException(e);
+	Dispatch dispatch = this.dispatch;
+	Handler[] eventHandlers = dispatch.getChain(event.getClass());
+	EventTracer tracer = this.tracer;
+	if(tracer == EventTracer.NONE) invokeAll(event, eventHandlers);
+	else {
+		long start = System.nanoTime();
+		int invoked = invokeAll(event, eventHandlers);
+		tracer.posted(event, dispatch.types[eventIndex], invoked, System.nanoTime() - start);
+	}
+}
+
+/**
+ * Sends a batch of events to the listeners of its event type.
+ * @param batch the batch
+ * @param eventIndex index of the event type of the batch
+ */
+private void postBatch(EventBatch<?> batch, int eventIndex) {
+	Dispatch dispatch = this.dispatch;
+	Handler[] eventHandlers = dispatch.handlers[eventIndex];
+	EventTracer tracer = this.tracer;
+	if(tracer == EventTracer.NONE) invokeAll(batch, eventHandlers);
+	else {
+		long start = System.nanoTime();
+		int invoked = invokeAll(batch, eventHandlers);
+		tracer.posted(batch, dispatch.types[eventIndex], invoked, System.nanoTime() - start);
+	}
+}
+
+/**
+ * Calls each handler with an event, stopping if the event is cancelled.
+ * @param event the event
+ * @param eventHandlers the handlers
+ * @return the number of handlers called
+ */
+private static int invokeAll(Object event, Handler[] eventHandlers) {
+	try {
+		if(event instanceof CancellableEvent) {
+			CancellableEvent cancellable = (CancellableEvent) event;
+			int i = 0;
+			for(; i < eventHandlers.length && !cancellable.isCancelled(); i++)
+				eventHandlers[i].invoker.invoke(eventHandlers[i].listener, event);
+			return i;
+		}
+		for(int i = 0; i < eventHandlers.length; i++) eventHandlers[i].invoker.invoke(eventHandlers[i].listener, event);
+		return eventHandlers.length;
+	} catch(RuntimeException | Error e) {
+		throw e;
+	} catch(Throwable e) {
+		throw new RuntimeException(e);
+	}
+}
+
+/**
+ * Replaces the snapshot of handlers for an event type with one built from its current listeners.
+ * Handlers are ordered by priority, then by group, then by listener, then by method.
+ * @param eventIndex index of event
+ */
+private void updateHandlers(int eventIndex) {
+	ArrayBuildList<Handler> list = new ArrayBuildList<>(new Handler[1]);
+	for(Bucket<ListenerMethod[], Collection<Object>> group:groups.get(eventIndex).values()) {
+		ListenerMethod[] groupMethods = group.getE1();
+		for(Object listener:group.getE2()) for(ListenerMethod method:groupMethods)
+			list.add(new Handler(listener, listener instanceof WeakListener ? method.getWeakInvoker(log) : method.getInvoker(log), method.priority));
+	}
+	Handler[] eventHandlers = list.toArray();
+	Arrays.sort(eventHandlers, HANDLER_ORDER);
+	Dispatch oldDispatch = dispatch;
+	Handler[][] newHandlers = oldDispatch.handlers.clone();
+	newHandlers[eventIndex] = eventHandlers;
+	dispatch = new Dispatch(oldDispatch.types, newHandlers, oldDispatch.batched);
+}
+
+/**
+ * Removes the registrations of weak listeners that have been garbage collected.
+ * This is called periodically on the client thread while there are weak listeners.
+ */
+public synchronized void expungeStaleListeners() {
+	boolean[] changed = null;
+	for(Reference<?> ref = staleListeners.poll(); ref != null; ref = staleListeners.poll()) {
+		weakListeners.remove(ref);
+		Reference<?> stale = ref;
+		for(int i = 0; i < groups.size(); i++) for(Bucket<ListenerMethod[], Collection<Object>> group:groups.get(i).values()) {
+			if(group.getE2().removeIf(listener -> listener == stale)) {
+				if(changed == null) changed = new boolean[groups.size()];
+				changed[i] = true;
+			}
+		}
+	}
+	if(changed != null) for(int i = 0; i < changed.length; i++) if(changed[i]) updateHandlers(i);
+}
+
+/**
+ * Expunges stale listeners, continuing every {@value #CLEANUP_INTERVAL} ticks until there are no weak listeners.
+ * @return ticks until the next cleanup, or {@code -1} to stop
+ */
+private synchronized int cleanStaleListeners() {
+	expungeStaleListeners();
+	if(!weakListeners.isEmpty()) return CLEANUP_INTERVAL;
+	cleanupScheduled = false;
+	return -1;
+}
+
+/**
+ * Gets the listeners of each registered event type that have not been garbage collected.
+ * @return a new map of each event type to its listeners
+ */
+public synchronized Map<Class<?>, List<Object>> getListeners() {
+	Map<Class<?>, List<Object>> listeners = new LinkedHashMap<>();
+	for(int i = 0; i < groups.size(); i++) {
+		List<Object> list = new ArrayList<>();
+		for(Bucket<ListenerMethod[], Collection<Object>> group:groups.get(i).values()) for(Object listener:group.getE2()) {
+			if(listener instanceof WeakListener) listener = ((WeakListener) listener).get();
+			if(listener != null) list.add(listener);
 		}
+		listeners.put(eventTypes.get(i), list);
 	}
+	return listeners;
+}
+
+/**
+ * Sets the tracer notified of listeners being added and removed and events being posted.
+ * @param tracer the tracer, or {@link EventTracer#NONE} to stop tracing
+ */
+public void setTracer(EventTracer tracer) {
+	this.tracer = Objects.requireNonNull(tracer);
+}
+
+/**
+ * Gets the tracer notified of listeners being added and removed and events being posted.
+ * @return the tracer of this event manager
+ */
+public EventTracer getTracer() {
+	return tracer;
 }
 
 /**
@@ -116,75 +387,521 @@ public String toString() {
 
 /**
  * Gets the collection of similar listeners for an event, or makes one if one does not exist.
+ * Listeners are grouped by the set of listener methods they have for the event,
+ * which is looked up from the cached listener methods of their type.
  * @param listener a listener
- * @param eventType the event type that is listened for
- * @return a collection of listeners registered for {@code eventClass} that have the same capabilities to listen for any event
- * @throws IllegalArgumentException if the listener does not listen for the event type, or if the event type is not registered
+ * @param eventIndex index of the event type that is listened for
+ * @param create if a collection should be made if one does not exist
+ * @return a collection of listeners registered for the event type that have the same capabilities to listen for any event,
+ * or {@code null} if one does not exist and {@code create} is {@code false}
+ * @throws IllegalArgumentException if the listener does not listen for the event type
+ * @throws AnnotationFormatError if a listener method does not accept the event type, or {@link EventBatch} if the event type is batched
  */
-private Collection<Object> getCollection(Object listener, Class<?> eventType) {
-	Collection<Bucket<Method[], Collection<Object>>> eventListeners = methods.get(getIndex(eventType));
-	Method[] allListenerMethods = listener.getClass().getMethods();
-	ArrayBuildList<Method> getMethods = new ArrayBuildList<>(new Method[allListenerMethods.length]);
-	for(Method method:allListenerMethods) {
-		OnEvent a = method.getAnnotation(OnEvent.class);
-		if(a != null) {
-			Class<?>[] acceptedEvents = a.value();
-			if(acceptedEvents.length == 0) {
-				if(method.getParameterCount() == 1) {
-					if(method.getParameters()[0].getType().isAssignableFrom(eventType)) getMethods.add(method);
-				} else getMethods.add(method); //will result in AnnotationFormatError
-			} else if(Util.indexOf(acceptedEvents, eventType) >= 0) getMethods.add(method);
-		}
-	}
-	Method[] listenerMethods = getMethods.toArray();
-	if(listenerMethods.length == 0) throw new IllegalArgumentException(listener.getClass() + " does not listen for " + eventType);
-	groups:
-	for(Bucket<Method[], Collection<Object>> group:eventListeners) {
-		Method[] methods = group.getE1();
-		if(methods.length == listenerMethods.length) {
-			for(int i = 0; i < methods.length; i++) if(!methods[i].equals(listenerMethods[i]) &&
-					Util.indexOf(listenerMethods, methods[i]) < 0) continue groups;
-			return group.getE2();
-		}
-	}
-	for(Method method:listenerMethods) {
+private Collection<Object> getCollection(Object listener, int eventIndex, boolean create) {
+	Class<?> eventType = eventTypes.get(eventIndex);
+	Bucket<List<Method>, ListenerMethod[]> listenerMethods = ListenerType.of(listener.getClass()).getMethods(eventType);
+	if(listenerMethods.getE2().length == 0) throw new IllegalArgumentException(listener.getClass() + " does not listen for " + eventType);
+	Map<List<Method>, Bucket<ListenerMethod[], Collection<Object>>> eventGroups = groups.get(eventIndex);
+	Bucket<ListenerMethod[], Collection<Object>> group = eventGroups.get(listenerMethods.getE1());
+	if(group != null) return group.getE2();
+	if(!create) return null;
+	Class<?> acceptedType = dispatch.batched[eventIndex] ? EventBatch.class : eventType;
+	for(Method method:listenerMethods.getE1()) {
 		if(Modifier.isStatic(method.getModifiers())) throw new AnnotationFormatError(method + " must not be static");
-		if(method.getParameterCount() != 1 || !method.getParameters()[0].getType().isAssignableFrom(eventType))
-			throw new AnnotationFormatError(method + " must take a single parameter acceptable of " + eventType);
+		if(method.getParameterCount() != 1 || !method.getParameters()[0].getType().isAssignableFrom(acceptedType))
+			throw new AnnotationFormatError(method + " must take a single parameter acceptable of " + acceptedType);
 	}
 	Collection<Object> collection = new ArrayBuildList<>(new Object[1]);
-	eventListeners.add(Bucket.of(listenerMethods, collection));
+	eventGroups.put(listenerMethods.getE1(), Bucket.of(listenerMethods.getE2(), collection));
 	return collection;
 }
 
+/**
+ * Creates an invoker for a listener method.
+ * If the method requires the client thread, the invoker passes calls from other threads to {@link Tick#MAIN}.
+ * If the declaring type and parameter type of the method are public and visible to this class,
+ * the invoker is generated through {@link LambdaMetafactory} and calls the method directly.
+ * Otherwise, such as for listeners loaded by a plugin class loader, the invoker calls a {@link MethodHandle}.
+ * @param method a listener method
+ * @param log logger for methods that cannot be called directly
+ * @return an invoker for the method
+ * @throws IllegalArgumentException if the method cannot be accessed
+ */
+private static Invoker createInvoker(Method method, Logger log) {
+	Invoker invoker = createDirectInvoker(method, log);
+	return method.getAnnotation(OnEvent.class).clientThread() ? toClientThread(invoker) : invoker;
+}
+
+/**
+ * Creates an invoker that calls a listener method on the current thread.
+ * @param method a listener method
+ * @param log logger for methods that cannot be called directly
+ * @return an invoker for the method
+ * @throws IllegalArgumentException if the method cannot be accessed
+ */
+private static Invoker createDirectInvoker(Method method, Logger log) {
+	Class<?> type = method.getDeclaringClass();
+	Class<?> param = method.getParameterTypes()[0];
+	MethodHandles.Lookup lookup = MethodHandles.lookup();
+	if(Modifier.isPublic(type.getModifiers()) && Modifier.isPublic(param.getModifiers()) && isVisible(type) && isVisible(param)) try {
+		return (Invoker) LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(Invoker.class),
+				MethodType.methodType(void.class, Object.class, Object.class), lookup.unreflect(method),
+				MethodType.methodType(void.class, type, param)).getTarget().invokeExact();
+	} catch(LambdaConversionException | IllegalAccessException e) {
+		log.debug("Unable to call {} directly, falling back to a method handle: {}", method, e.toString());
+	} catch(RuntimeException | Error e) {
+		throw e;
+	} catch(Throwable e) {
+		throw new RuntimeException(e);
+	}
+	MethodHandle handle;
+	try {
+		method.setAccessible(true);
+		handle = lookup.unreflect(method).asType(MethodType.methodType(void.class, Object.class, Object.class));
+	} catch(ReflectiveOperationException | SecurityException e) {
+		throw new IllegalArgumentException("Unable to access " + method, e);
+	}
+	return (listener, event) -> {
+		handle.invokeExact(listener, event);
+	};
+}
+
+/**
+ * Wraps an invoker so that calls from threads other than the client thread are run during the next {@link Tick#MAIN}.
+ * Calls made on the client thread before {@link Tick#MAIN} first runs are invoked directly.
+ * If the event is a {@link CancellableEvent} that has been cancelled by the time the call is run, the call is skipped.
+ * @param invoker an invoker
+ * @return an invoker calling {@code invoker} on the client thread
+ */
+private static Invoker toClientThread(Invoker invoker) {
+	return (listener, event) -> {
+		if(isClientThread()) invoker.invoke(listener, event);
+		else Tick.MAIN.runRequired(() -> {
+			if(event instanceof CancellableEvent && ((CancellableEvent) event).isCancelled()) return;
+			try {
+				invoker.invoke(listener, event);
+			} catch(RuntimeException | Error e) {
+				throw e;
+			} catch(Throwable e) {
+				throw new RuntimeException(e);
+			}
+		});
+	};
+}
+
+private static boolean isClientThread() {
+	if(Tick.MAIN.isTickThread()) return true;
+	Minecraft mc = Minecraft.getMinecraft();
+	return mc != null && mc.isCallingFromMinecraftThread();
+}
+
+/**
+ * Determines if a type can be linked from generated invokers.
+ * @param type a type
+ * @return {@code true} if the class loader of this class resolves {@code type} to the same class
+ */
+private static boolean isVisible(Class<?> type) {
+	try {
+		return Class.forName(type.getName(), false, EventManager.class.getClassLoader()) == type;
+	} catch(ClassNotFoundException e) {
+		return false;
+	}
+}
+
 /**
  * Gets an array of event types that the given type is able to listen for.
+ * Methods taking an {@link EventBatch} listen for the event types declared in {@link OnEvent#value()}.
+ * The event types of each listener type are computed once and cached.
  * @param listenerType the listener type
  * @return an array of event types that the given type can be added as a listener for
  */
 public static Class<?>[] getEventTypes(Class<?> listenerType) {
+	return ListenerType.of(listenerType).getEventTypes().clone();
+}
+
+/**
+ * Finds the event types listened for by the listener methods of a type.
+ * @param methods the listener methods of a type
+ * @return an array of event types that the listener methods can be added as listeners for
+ * @throws AnnotationFormatError if a listener method is static or does not take a single acceptable parameter
+ */
+private static Class<?>[] findEventTypes(ListenerMethod[] methods) {
 	ArrayBuildList<Class<?>> classes = new ArrayBuildList<>(Util.CLASS_ARRAY_0);
 	Set<String> classSet = new HashSet<>();
-	for(Method method:listenerType.getMethods()) {
-		OnEvent a = method.getAnnotation(OnEvent.class);
-		if(a != null) {
-			if(Modifier.isStatic(method.getModifiers())) throw new AnnotationFormatError(method + " must not be static");
-			Parameter[] params = method.getParameters();
-			Class<?>[] eventClasses = a.value();
-			if(params.length == 1) {
-				if(eventClasses.length == 0) {
-					Class<?> eventClass = params[0].getType();
+	for(ListenerMethod listenerMethod:methods) {
+		Method method = listenerMethod.method;
+		if(Modifier.isStatic(method.getModifiers())) throw new AnnotationFormatError(method + " must not be static");
+		Parameter[] params = method.getParameters();
+		Class<?>[] eventClasses = listenerMethod.annotation.value();
+		if(params.length == 1) {
+			if(eventClasses.length == 0) {
+				Class<?> eventClass = params[0].getType();
+				if(classSet.add(eventClass.getName())) classes.add(eventClass);
+			} else for(Class<?> eventClass:eventClasses) {
+				if(params[0].getType().isAssignableFrom(eventClass) || params[0].getType() == EventBatch.class) {
 					if(classSet.add(eventClass.getName())) classes.add(eventClass);
-				} else for(Class<?> eventClass:eventClasses) {
-					if(params[0].getType().isAssignableFrom(eventClass)) {
-						if(classSet.add(eventClass.getName())) classes.add(eventClass);
-					} else throw new AnnotationFormatError(method + " must take a single parameter acceptable of " + eventClass);
+				} else throw new AnnotationFormatError(method + " must take a single parameter acceptable of " + eventClass);
+			}
+		} else throw new AnnotationFormatError(method + " must take a single parameter" +
+				(eventClasses.length == 0 ? "" : " acceptable of the following: " + Arrays.toString(eventClasses)));
+	}
+	return classes.trim().getArray();
+}
+
+/**
+ * Calls a listener method with an event.
+ * @author Magnileve
+ */
+@FunctionalInterface
+static interface Invoker {
+	/**
+	 * Calls a listener method.
+	 * @param listener the listener
+	 * @param event the event
+	 * @throws Throwable if the listener method throws anything
+	 */
+	void invoke(Object listener, Object event) throws Throwable;
+}
+
+/**
+ * Contains a listener, an invoker for one of its methods, and the priority of the method.
+ * @author Magnileve
+ */
+private static final class Handler {
+	private final Object listener;
+	private final Invoker invoker;
+	private final Priority priority;
+	
+	private Handler(Object listener, Invoker invoker, Priority priority) {
+		this.listener = listener;
+		this.invoker = invoker;
+		this.priority = priority;
+	}
+}
+
+/**
+ * An immutable snapshot of registered event types and their handlers,
+ * along with the chains of handlers resolved from the snapshot for each posted class.
+ * @author Magnileve
+ */
+private static final class Dispatch {
+	private final Class<?>[] types;
+	private final Handler[][] handlers;
+	private final boolean[] batched;
+	private final Map<Class<?>, Handler[]> chains;
+	
+	private Dispatch(Class<?>[] types, Handler[][] handlers, boolean[] batched) {
+		this.types = types;
+		this.handlers = handlers;
+		this.batched = batched;
+		chains = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Gets the handlers to be called for events of a class, resolving them if they have not been resolved yet.
+	 * @param type class of an event
+	 * @return the handlers for {@code type}
+	 */
+	private Handler[] getChain(Class<?> type) {
+		Handler[] chain = chains.get(type);
+		if(chain == null) {
+			chain = resolveChain(type);
+			Handler[] prevChain = chains.putIfAbsent(type, chain);
+			if(prevChain != null) chain = prevChain;
+		}
+		return chain;
+	}
+	
+	/**
+	 * Collects the handlers of each registered event type inherited by a class, searching breadth-first from the class,
+	 * then orders them by priority.
+	 * A listener method registered for multiple inherited event types is only included for the nearest of them,
+	 * while listeners added more than once for the same event type are included once per registration.
+	 * Handlers of batched event types are not included.
+	 * @param type class of an event
+	 * @return the handlers for {@code type}
+	 */
+	private Handler[] resolveChain(Class<?> type) {
+		ArrayBuildList<Handler> chain = new ArrayBuildList<>(new Handler[1]);
+		Set<Class<?>> visited = new HashSet<>();
+		Queue<Class<?>> queue = new ArrayDeque<>();
+		queue.add(type);
+		for(Class<?> next = queue.poll(); next != null; next = queue.poll()) if(visited.add(next)) {
+			int index = Util.indexOf(types, next);
+			if(index >= 0 && !batched[index]) {
+				int inherited = chain.size();
+				handlers:
+				for(Handler handler:handlers[index]) {
+					for(int i = 0; i < inherited; i++) {
+						Handler added = chain.get(i);
+						if(added.listener == handler.listener && added.invoker == handler.invoker) continue handlers;
+					}
+					chain.add(handler);
 				}
-			} else throw new AnnotationFormatError(method + " must take a single parameter" +
-					(eventClasses.length == 0 ? "" : " acceptable of the following: " + Arrays.toString(eventClasses)));
+			}
+			for(Class<?> inherited:InheritanceMap.GET_INHERITED_TYPES.apply(next)) queue.add(inherited);
 		}
+		Handler[] array = chain.toArray();
+		Arrays.sort(array, HANDLER_ORDER);
+		return array;
+	}
+}
+
+/**
+ * Listener methods are ordered by their assigned priorities when listeners are added
+ * so that listener methods with a higher priority (lower ordinal) are called first for an event.
+ * @author Magnileve
+ * @see OnEvent#priority()
+ */
+public enum Priority {
+	HIGHEST, HIGH, NORMAL, LOW, LOWEST;
+}
+
+/**
+ * Queues events of an asynchronous event type and posts them in order on an executor,
+ * running on at most one thread at a time.
+ * @author Magnileve
+ */
+private final class AsyncPoster implements Runnable {
+	private final int eventIndex;
+	private final ExecutorService executor;
+	private final Queue<Object> events;
+	private final AtomicBoolean scheduled;
+	
+	private AsyncPoster(int eventIndex, ExecutorService executor) {
+		this.eventIndex = eventIndex;
+		this.executor = executor;
+		events = new ConcurrentLinkedQueue<>();
+		scheduled = new AtomicBoolean();
+	}
+	
+	/**
+	 * Queues an event to be posted.
+	 * @param event the event
+	 */
+	private void offer(Object event) {
+		events.offer(event);
+		if(scheduled.compareAndSet(false, true)) executor.execute(this);
+	}
+	
+	@Override
+	public void run() {
+		do {
+			for(Object event = events.poll(); event != null; event = events.poll()) try {
+				post(event, eventIndex);
+			} catch(RuntimeException e) {
+				log.error("Exception while posting " + event, e);
+			}
+			scheduled.set(false);
+		} while(!events.isEmpty() && scheduled.compareAndSet(false, true));
+	}
+}
+
+/**
+ * Folds posts of an event type together according to a {@link CoalescingPolicy} and sends them during the policy's tick.
+ * @param <T> the event type
+ * @author Magnileve
+ */
+private final class Coalescer<T> implements Runnable {
+	private final int eventIndex;
+	private final Class<T> eventType;
+	private final CoalescingPolicy<? super T> policy;
+	
+	private Map<Object, T> latest;
+	private List<T> batch;
+	private boolean scheduled;
+	
+	private Coalescer(int eventIndex, Class<T> eventType, CoalescingPolicy<? super T> policy) {
+		this.eventIndex = eventIndex;
+		this.eventType = eventType;
+		this.policy = policy;
+		if(policy.isBatch()) batch = new ArrayList<>();
+		else latest = new LinkedHashMap<>();
+	}
+	
+	/**
+	 * Folds an event into the events to be sent during the next tick.
+	 * @param event the event
+	 */
+	private synchronized void offer(T event) {
+		if(batch == null) latest.put(policy.getKey(event), event);
+		else batch.add(event);
+		if(!scheduled) scheduled = policy.getTick().run(this);
+	}
+	
+	@Override
+	public void run() {
+		Map<Object, T> sendLatest;
+		List<T> sendBatch;
+		synchronized(this) {
+			scheduled = false;
+			sendLatest = latest;
+			sendBatch = batch;
+			if(batch == null) latest = new LinkedHashMap<>();
+			else batch = new ArrayList<>();
+		}
+		if(sendBatch == null) for(T event:sendLatest.values()) post(event, eventIndex);
+		else if(!sendBatch.isEmpty()) postBatch(new EventBatch<>(eventType, sendBatch), eventIndex);
+	}
+}
+
+/**
+ * Contains the listener methods of a type and the event types they listen for, computed once per type.
+ * @author Magnileve
+ */
+private static final class ListenerType {
+	private static final ClassValue<ListenerType> CACHE = new ClassValue<ListenerType>() {
+		@Override
+		protected ListenerType computeValue(Class<?> type) {
+			return new ListenerType(type);
+		}
+	};
+	private static final Comparator<Method> METHOD_ORDER = Comparator.comparing(Method::toString);
+	
+	private final ListenerMethod[] methods;
+	private final Map<Class<?>, Bucket<List<Method>, ListenerMethod[]>> methodsByEvent;
+	
+	private Class<?>[] eventTypes;
+	private AnnotationFormatError eventTypesError;
+	
+	private ListenerType(Class<?> type) {
+		Method[] allMethods = type.getMethods();
+		Arrays.sort(allMethods, METHOD_ORDER);
+		ArrayBuildList<ListenerMethod> list = new ArrayBuildList<>(new ListenerMethod[1]);
+		for(Method method:allMethods) {
+			OnEvent a = method.getAnnotation(OnEvent.class);
+			if(a != null) list.add(new ListenerMethod(method, a));
+		}
+		methods = list.toArray();
+		methodsByEvent = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Gets the cached listener methods of a type.
+	 * @param type a listener type
+	 * @return the listener methods of {@code type}
+	 */
+	private static ListenerType of(Class<?> type) {
+		return CACHE.get(type);
+	}
+	
+	/**
+	 * Gets the event types this type listens for.
+	 * @return the cached array of event types
+	 * @throws AnnotationFormatError if a listener method is static or does not take a single acceptable parameter
+	 */
+	private synchronized Class<?>[] getEventTypes() {
+		if(eventTypes == null && eventTypesError == null) try {
+			eventTypes = findEventTypes(methods);
+		} catch(AnnotationFormatError e) {
+			eventTypesError = e;
+		}
+		if(eventTypesError != null) throw eventTypesError;
+		return eventTypes;
+	}
+	
+	/**
+	 * Gets the listener methods of this type that listen for an event type.
+	 * Methods taking an unexpected number of parameters are included so that adding the listener fails.
+	 * @param eventType the event type
+	 * @return a list of the methods for use as a group key, and the listener methods
+	 */
+	private Bucket<List<Method>, ListenerMethod[]> getMethods(Class<?> eventType) {
+		Bucket<List<Method>, ListenerMethod[]> eventMethods = methodsByEvent.get(eventType);
+		if(eventMethods == null) {
+			ArrayBuildList<ListenerMethod> list = new ArrayBuildList<>(new ListenerMethod[1]);
+			for(ListenerMethod method:methods) {
+				Class<?>[] acceptedEvents = method.annotation.value();
+				if(acceptedEvents.length == 0) {
+					if(method.method.getParameterCount() != 1 || method.method.getParameterTypes()[0].isAssignableFrom(eventType)) list.add(method);
+				} else if(Util.indexOf(acceptedEvents, eventType) >= 0) list.add(method);
+			}
+			ListenerMethod[] array = list.toArray();
+			Method[] key = new Method[array.length];
+			for(int i = 0; i < array.length; i++) key[i] = array[i].method;
+			eventMethods = Bucket.of(Arrays.asList(key), array);
+			methodsByEvent.put(eventType, eventMethods);
+		}
+		return eventMethods;
+	}
+}
+
+/**
+ * Contains a listener method, its annotation, and its invoker, which is created when first needed.
+ * @author Magnileve
+ */
+private static final class ListenerMethod {
+	private final Method method;
+	private final OnEvent annotation;
+	private final Priority priority;
+	
+	private volatile Invoker invoker;
+	private volatile Invoker weakInvoker;
+	
+	private ListenerMethod(Method method, OnEvent annotation) {
+		this.method = method;
+		this.annotation = annotation;
+		priority = annotation.priority();
+	}
+	
+	/**
+	 * Gets the invoker of this method, creating it if it has not been created yet.
+	 * @param log logger for methods that cannot be called directly
+	 * @return the invoker of this method
+	 * @throws IllegalArgumentException if the method cannot be accessed
+	 */
+	private Invoker getInvoker(Logger log) {
+		Invoker methodInvoker = invoker;
+		if(methodInvoker == null) invoker = methodInvoker = createInvoker(method, log);
+		return methodInvoker;
+	}
+	
+	/**
+	 * Gets an invoker of this method taking a {@link WeakListener}, which skips the call if the listener has been collected.
+	 * @param log logger for methods that cannot be called directly
+	 * @return the weak invoker of this method
+	 * @throws IllegalArgumentException if the method cannot be accessed
+	 */
+	private Invoker getWeakInvoker(Logger log) {
+		Invoker methodInvoker = weakInvoker;
+		if(methodInvoker == null) {
+			Invoker strongInvoker = getInvoker(log);
+			weakInvoker = methodInvoker = (weakListener, event) -> {
+				Object listener = ((WeakListener) weakListener).get();
+				if(listener != null) strongInvoker.invoke(listener, event);
+			};
+		}
+		return methodInvoker;
+	}
+}
+
+/**
+ * A weak reference to a listener, equal to other weak references to the same listener.
+ * Each weakly added listener has one instance shared by all of its registrations.
+ * @author Magnileve
+ */
+private static final class WeakListener extends WeakReference<Object> {
+	private final int hash;
+	
+	private int registrations;
+	
+	private WeakListener(Object listener, ReferenceQueue<Object> queue) {
+		super(listener, queue);
+		hash = System.identityHashCode(listener);
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) return true;
+		if(!(obj instanceof WeakListener)) return false;
+		Object listener = get();
+		return listener != null && listener == ((WeakListener) obj).get();
 	}
-	return classes.trim().getArray();
 }
 
 }
\ No newline at end of file
@@ -9,7 +9,7 @@ package magnileve.chungamod.events;
 public interface EventPoster<T> {
 
 /**
- * Sends an event to all of its event type's registered listeners.
+ * Sends an event to the registered listeners of all registered event types inherited by the class of the event.
  * @param event the event
  */
 public void post(T event);
@@ -0,0 +1,66 @@
+package magnileve.chungamod.events;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Receives notifications of listeners being added and removed and events being posted by an {@link EventManager}.
+ * While the tracer of an {@code EventManager} is {@link #NONE}, events are posted without timing or notifying a tracer.
+ * @author Magnileve
+ * @see EventManager#setTracer(EventTracer)
+ */
+public interface EventTracer {
+
+/**
+ * Does nothing.  This is the default tracer of an {@link EventManager}.
+ */
+public static final EventTracer NONE = new EventTracer() {};
+
+/**
+ * Called after a listener is added.
+ * @param listener the listener
+ * @param eventType the type of event listened for
+ */
+public default void listenerAdded(Object listener, Class<?> eventType) {}
+
+/**
+ * Called after a listener is removed.
+ * @param listener the listener
+ * @param eventType the type of event no longer listened for
+ */
+public default void listenerRemoved(Object listener, Class<?> eventType) {}
+
+/**
+ * Called after an event is posted.
+ * @param event the event
+ * @param eventType the registered event type the event was posted as
+ * @param listeners the number of listener methods called, which is less than the number of listener methods of the event
+ * if it was cancelled before reaching all of them
+ * @param nanos time taken to dispatch the event in nanoseconds
+ */
+public default void posted(Object event, Class<?> eventType, int listeners, long nanos) {}
+
+/**
+ * Creates a tracer that logs each notification at the trace level.
+ * @param log the logger
+ * @return a new tracer logging to {@code log}
+ */
+public static EventTracer logging(Logger log) {
+	return new EventTracer() {
+		@Override
+		public void listenerAdded(Object listener, Class<?> eventType) {
+			log.trace("Added event listener {} for {}", listener, eventType);
+		}
+		
+		@Override
+		public void listenerRemoved(Object listener, Class<?> eventType) {
+			log.trace("Removed event listener {} for {}", listener, eventType);
+		}
+		
+		@Override
+		public void posted(Object event, Class<?> eventType, int listeners, long nanos) {
+			log.trace("Posted event {} as {} to {} listeners in {}ns", event, eventType, listeners, nanos);
+		}
+	};
+}
+
+}
\ No newline at end of file
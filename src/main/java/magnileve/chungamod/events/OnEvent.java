@@ -9,6 +9,7 @@ import java.lang.annotation.Target;
  * Marks a method as an event listener method to be registered by an {@link EventManager}.
  * This method must be {@code public}
  * and have a single parameter that is assignable from all types returned by {@link #value()}.
+ * For event types registered with a batch {@link CoalescingPolicy}, the parameter is instead an {@link EventBatch}.
  * @author Magnileve
  */
 @Retention(RetentionPolicy.RUNTIME)
@@ -23,4 +24,21 @@ public @interface OnEvent {
  */
 Class<?>[] value() default {};
 
+/**
+ * Gets the priority of the annotated method.
+ * Methods with a higher priority are called before methods with a lower priority for the same event,
+ * and may cancel a {@link CancellableEvent} before it reaches them.
+ * @return the priority of the annotated method
+ */
+EventManager.Priority priority() default EventManager.Priority.NORMAL;
+
+/**
+ * Determines if the annotated method must be called on the client thread.
+ * If {@code true} and an event is posted from another thread, such as for an asynchronous event type,
+ * the call is run during the next {@link magnileve.chungamod.Tick#MAIN Tick.MAIN} instead.
+ * Such a call happens after the event has been posted to the other listeners, so it cannot cancel the event for them.
+ * @return {@code true} if the annotated method must be called on the client thread
+ */
+boolean clientThread() default false;
+
 }
\ No newline at end of file
@@ -0,0 +1,226 @@
+package magnileve.chungamod.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import magnileve.chungamod.Chung;
+import magnileve.chungamod.Commands.Argument;
+import magnileve.chungamod.Commands.Command;
+import magnileve.chungamod.Commands.CommandArgumentException;
+import magnileve.chungamod.Commands.CommandFactory;
+import magnileve.chungamod.Commands.ContainsCommand;
+import magnileve.chungamod.util.MCUtil;
+
+/**
+ * An {@link EventTracer} recording the number of posts, listener calls, listeners added and removed,
+ * and dispatch time of each event type.
+ * Notifications are also passed to the tracer this tracer replaced, such as a logging tracer.
+ * Statistics may be recorded from multiple threads.
+ * Tracing of the Chungamod event manager is controlled through the command {@code eventstats}.
+ * @author Magnileve
+ */
+@ContainsCommand
+public class StatsEventTracer implements EventTracer {
+
+private final Map<Class<?>, EventStats> stats;
+private final EventTracer next;
+
+/**
+ * Creates a new {@code StatsEventTracer} with no recorded statistics.
+ */
+public StatsEventTracer() {
+	this(EventTracer.NONE);
+}
+
+/**
+ * Creates a new {@code StatsEventTracer} with no recorded statistics, also passing notifications to another tracer.
+ * @param next the tracer also notified, usually the tracer being replaced
+ */
+public StatsEventTracer(EventTracer next) {
+	stats = new ConcurrentHashMap<>();
+	this.next = next;
+}
+
+@Override
+public void listenerAdded(Object listener, Class<?> eventType) {
+	statsOf(eventType).listenersAdded.increment();
+	next.listenerAdded(listener, eventType);
+}
+
+@Override
+public void listenerRemoved(Object listener, Class<?> eventType) {
+	statsOf(eventType).listenersRemoved.increment();
+	next.listenerRemoved(listener, eventType);
+}
+
+@Override
+public void posted(Object event, Class<?> eventType, int listeners, long nanos) {
+	EventStats eventStats = statsOf(eventType);
+	eventStats.posts.increment();
+	eventStats.listenerCalls.add(listeners);
+	eventStats.totalNanos.add(nanos);
+	eventStats.maxNanos.accumulateAndGet(nanos, Math::max);
+	next.posted(event, eventType, listeners, nanos);
+}
+
+private EventStats statsOf(Class<?> eventType) {
+	EventStats eventStats = stats.get(eventType);
+	if(eventStats == null) {
+		eventStats = new EventStats(eventType);
+		EventStats prevStats = stats.putIfAbsent(eventType, eventStats);
+		if(prevStats != null) eventStats = prevStats;
+	}
+	return eventStats;
+}
+
+/**
+ * Gets the tracer also notified by this tracer.
+ * @return the tracer passed notifications
+ */
+public EventTracer getNext() {
+	return next;
+}
+
+/**
+ * Gets the statistics of each event type, sorted by total dispatch time in descending order.
+ * @return a new list of event statistics
+ */
+public List<EventStats> getStats() {
+	List<EventStats> list = new ArrayList<>(stats.values());
+	list.sort((o1, o2) -> Long.compare(o2.getTotalNanos(), o1.getTotalNanos()));
+	return list;
+}
+
+/**
+ * Removes all recorded statistics.
+ */
+public void reset() {
+	stats.clear();
+}
+
+@CommandFactory(name = "eventstats", description = "Records statistics of posted events")
+@Argument(index = 0, name = "action", description = "start, stop, reset, or dump")
+static Command eventStatsCommand() {
+	return args -> {
+		EventManager eventManager = Chung.US.getEventManager();
+		switch(args[0].toLowerCase()) {
+		case "start":
+			return () -> {
+				EventTracer tracer = eventManager.getTracer();
+				if(!(tracer instanceof StatsEventTracer)) eventManager.setTracer(new StatsEventTracer(tracer));
+				MCUtil.sendMessage("Event statistics started");
+			};
+		case "stop":
+			return () -> {
+				EventTracer tracer = eventManager.getTracer();
+				if(tracer instanceof StatsEventTracer) eventManager.setTracer(((StatsEventTracer) tracer).getNext());
+				MCUtil.sendMessage("Event statistics stopped");
+			};
+		case "reset":
+			return () -> {
+				if(eventManager.getTracer() instanceof StatsEventTracer) ((StatsEventTracer) eventManager.getTracer()).reset();
+				MCUtil.sendMessage("Event statistics reset");
+			};
+		case "dump":
+			return () -> {
+				EventTracer tracer = eventManager.getTracer();
+				if(!(tracer instanceof StatsEventTracer)) {
+					MCUtil.sendMessage("Event statistics are not running");
+					return;
+				}
+				StringBuilder str = new StringBuilder("\n----- Event Statistics: -----");
+				for(EventStats eventStats:((StatsEventTracer) tracer).getStats()) str.append('\n').append(eventStats);
+				MCUtil.sendMessage(str.toString());
+			};
+		default:
+			throw new CommandArgumentException("Unknown action: " + args[0]);
+		}
+	};
+}
+
+/**
+ * Contains the statistics of an event type.
+ * @author Magnileve
+ */
+public static class EventStats {
+	private final Class<?> eventType;
+	private final LongAdder posts;
+	private final LongAdder listenerCalls;
+	private final LongAdder listenersAdded;
+	private final LongAdder listenersRemoved;
+	private final LongAdder totalNanos;
+	private final AtomicLong maxNanos;
+
+	private EventStats(Class<?> eventType) {
+		this.eventType = eventType;
+		posts = new LongAdder();
+		listenerCalls = new LongAdder();
+		listenersAdded = new LongAdder();
+		listenersRemoved = new LongAdder();
+		totalNanos = new LongAdder();
+		maxNanos = new AtomicLong();
+	}
+
+	/**
+	 * @return the event type
+	 */
+	public Class<?> getEventType() {
+		return eventType;
+	}
+
+	/**
+	 * @return the number of events posted
+	 */
+	public long getPosts() {
+		return posts.sum();
+	}
+
+	/**
+	 * @return the total number of listener methods called, not including those skipped after an event was cancelled
+	 */
+	public long getListenerCalls() {
+		return listenerCalls.sum();
+	}
+
+	/**
+	 * @return the number of listeners added for the event type
+	 */
+	public long getListenersAdded() {
+		return listenersAdded.sum();
+	}
+
+	/**
+	 * @return the number of listeners removed for the event type
+	 */
+	public long getListenersRemoved() {
+		return listenersRemoved.sum();
+	}
+
+	/**
+	 * @return the total time taken to dispatch events in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/**
+	 * @return the longest time taken to dispatch an event in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	@Override
+	public String toString() {
+		long postCount = getPosts();
+		return eventType.getSimpleName() + ": " + postCount + " posts, " + getListenerCalls() + " listener calls, " +
+				getListenersAdded() + " listeners added, " + getListenersRemoved() + " removed, mean " +
+				(postCount == 0 ? 0 : getTotalNanos() / postCount) + "ns, max " + getMaxNanos() + "ns";
+	}
+}
+
+}
\ No newline at end of file
@@ -0,0 +1,295 @@
+package magnileve.chungamod.packets;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.buffer.Unpooled;
+import magnileve.chungamod.Chung;
+import magnileve.chungamod.Commands.Argument;
+import magnileve.chungamod.Commands.Command;
+import magnileve.chungamod.Commands.CommandArgumentException;
+import magnileve.chungamod.Commands.CommandFactory;
+import magnileve.chungamod.Commands.ContainsCommand;
+import magnileve.chungamod.util.MCUtil;
+import magnileve.chungamod.util.MPSCRing;
+import net.minecraft.network.Packet;
+import net.minecraft.network.PacketBuffer;
+
+/**
+ * Records packets received and sent by the client to a compact binary file, which can be replayed with {@link PacketReplay}.
+ * Packets are recorded before any packet modifiers are run.
+ * Packets are serialized on the thread recording them, then written to the file by a background thread,
+ * so no file I/O is done on the network thread.
+ * If the writer falls {@value #CAPACITY} records behind, further packets are dropped and counted.
+ * Each record contains the direction, the class of the packet, the time since capture started, and the serialized packet.
+ * <p>
+ * The file starts with the magic number {@value #MAGIC}, a short version, and the start time in epoch milliseconds.
+ * It is followed by records, each starting with a byte type:<br>
+ * {@value #CLASS_RECORD}: a short ID followed by the name of a packet class as UTF<br>
+ * {@value #INBOUND_RECORD} or {@value #OUTBOUND_RECORD}: the short ID of the packet class, the long nanoseconds since capture started,
+ * an int length, and the bytes of the serialized packet
+ * </p>
+ * Capturing is controlled through the command {@code packetcapture}, which writes to the Chungamod captures directory.
+ * @author Magnileve
+ */
+@ContainsCommand
+public class PacketCapture implements Closeable {
+
+static final int MAGIC = 0x43485043;
+static final short VERSION = 1;
+static final byte CLASS_RECORD = 0;
+static final byte INBOUND_RECORD = 1;
+static final byte OUTBOUND_RECORD = 2;
+/**
+ * Capacity of the ring of records waiting to be written.
+ */
+static final int CAPACITY = 1 << 14;
+
+private static final String CAPTURES_DIRECTORY = "captures";
+private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(run -> {
+	Thread thread = new Thread(run, "Chungamod packet capture");
+	thread.setDaemon(true);
+	return thread;
+});
+
+private static volatile PacketCapture active;
+
+private final Path file;
+private final DataOutputStream out;
+private final Map<Class<?>, Integer> classIDs;
+private final PacketBuffer buffer;
+private final long startNanos;
+private final MPSCRing<Record> records;
+private final AtomicBoolean writeScheduled;
+private final AtomicLong packets;
+private final AtomicLong dropped;
+
+private volatile boolean closed;
+private boolean outClosed;
+
+/**
+ * Creates a new {@code PacketCapture} writing to a file.
+ * @param file the file to be created or overwritten
+ * @throws IOException if an I/O error occurs
+ */
+public PacketCapture(Path file) throws IOException {
+	this.file = file;
+	out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+	classIDs = new HashMap<>();
+	buffer = new PacketBuffer(Unpooled.buffer());
+	startNanos = System.nanoTime();
+	records = new MPSCRing<>(CAPACITY);
+	writeScheduled = new AtomicBoolean();
+	packets = new AtomicLong();
+	dropped = new AtomicLong();
+	out.writeInt(MAGIC);
+	out.writeShort(VERSION);
+	out.writeLong(System.currentTimeMillis());
+}
+
+/**
+ * Gets the capture currently being recorded.
+ * @return the active capture, or {@code null} if packets are not being captured
+ */
+public static PacketCapture getActive() {
+	return active;
+}
+
+/**
+ * Sets the capture to be recorded by the packet listener.
+ * @param capture the capture, or {@code null} to stop capturing
+ */
+public static void setActive(PacketCapture capture) {
+	active = capture;
+}
+
+/**
+ * Records a packet.  If the packet cannot be serialized, it is skipped.
+ * The packet is serialized on the current thread and written to the file later by the writer thread.
+ * @param packet the packet
+ * @param inbound {@code true} if the packet was received; {@code false} if it was sent
+ */
+void record(Packet<?> packet, boolean inbound) {
+	long nanos = System.nanoTime() - startNanos;
+	byte[] data;
+	synchronized(buffer) {
+		if(closed) return;
+		buffer.clear();
+		try {
+			packet.writePacketData(buffer);
+		} catch(IOException | RuntimeException e) {
+			return;
+		}
+		data = new byte[buffer.readableBytes()];
+		buffer.readBytes(data);
+	}
+	if(!records.offer(new Record(packet.getClass(), inbound, nanos, data))) {
+		dropped.incrementAndGet();
+		return;
+	}
+	packets.incrementAndGet();
+	if(writeScheduled.compareAndSet(false, true)) WRITER.execute(this::writeRecords);
+}
+
+/**
+ * Writes queued records to the file.
+ * Since the writer is a single thread, it is the only consumer of the ring of records.
+ */
+private void writeRecords() {
+	writeScheduled.set(false);
+	for(Record record = records.poll(); record != null && !outClosed; record = records.poll()) try {
+		Integer id = classIDs.get(record.packetClass);
+		if(id == null) {
+			if(classIDs.size() > Short.MAX_VALUE) continue;
+			id = classIDs.size();
+			classIDs.put(record.packetClass, id);
+			out.writeByte(CLASS_RECORD);
+			out.writeShort(id);
+			out.writeUTF(record.packetClass.getName());
+		}
+		out.writeByte(record.inbound ? INBOUND_RECORD : OUTBOUND_RECORD);
+		out.writeShort(id);
+		out.writeLong(record.nanos);
+		out.writeInt(record.data.length);
+		out.write(record.data);
+	} catch(IOException e) {
+		PacketListener.logError("Unable to write packet capture " + file, e);
+		closed = true;
+		if(active == this) active = null;
+		outClosed = true;
+		try {
+			out.close();
+		} catch(IOException e1) {}
+	}
+}
+
+/**
+ * Writes remaining records and closes the file on the writer thread.
+ */
+private void closeOut() {
+	if(outClosed) return;
+	writeRecords();
+	outClosed = true;
+	try {
+		out.close();
+	} catch(IOException e) {
+		PacketListener.logError("Unable to close packet capture " + file, e);
+	}
+}
+
+/**
+ * Gets the file this capture is written to.
+ * @return the file of this capture
+ */
+public Path getFile() {
+	return file;
+}
+
+/**
+ * Gets the number of packets recorded.
+ * @return the number of packets recorded
+ */
+public long getPackets() {
+	return packets.get();
+}
+
+/**
+ * Gets the number of packets dropped because the writer fell behind.
+ * @return the number of dropped packets
+ */
+public long getDropped() {
+	return dropped.get();
+}
+
+/**
+ * Stops recording, then waits for recorded packets to be written and the file to be closed.
+ */
+@Override
+public void close() {
+	synchronized(buffer) {
+		if(buffer.refCnt() == 0) return;
+		closed = true;
+		buffer.release();
+	}
+	if(active == this) active = null;
+	try {
+		WRITER.submit(this::closeOut).get();
+	} catch(InterruptedException e) {
+		Thread.currentThread().interrupt();
+	} catch(ExecutionException e) {
+		PacketListener.logError("Unable to close packet capture " + file, e.getCause());
+	}
+}
+
+@CommandFactory(name = "packetcapture", description = "Records sent and received packets to a file")
+@Argument(index = 0, name = "action", description = "start or stop")
+static Command packetCaptureCommand() {
+	return args -> {
+		switch(args[0].toLowerCase()) {
+		case "start":
+			return () -> {
+				if(active != null) {
+					MCUtil.sendMessage("Already capturing packets to " + active.file);
+					return;
+				}
+				try {
+					Path dir = Paths.get(Chung.CHUNGAMOD_DIRECTORY, CAPTURES_DIRECTORY);
+					if(!Files.isDirectory(dir)) Files.createDirectories(dir);
+					active = new PacketCapture(dir.resolve("capture-" + LocalDateTime.now().format(FILE_TIME_FORMAT) + ".bin"));
+					MCUtil.sendMessage("Capturing packets to " + active.file);
+				} catch(IOException e) {
+					MCUtil.sendMessage("Unable to start packet capture: " + e.getMessage());
+				}
+			};
+		case "stop":
+			return () -> {
+				PacketCapture capture = active;
+				if(capture == null) MCUtil.sendMessage("Packets are not being captured");
+				else {
+					capture.close();
+					long dropped = capture.getDropped();
+					MCUtil.sendMessage("Captured " + capture.getPackets() + " packets to " + capture.file +
+							(dropped == 0 ? "" : ", dropped " + dropped + " packets"));
+				}
+			};
+		default:
+			throw new CommandArgumentException("Unknown action: " + args[0]);
+		}
+	};
+}
+
+/**
+ * A serialized packet waiting to be written.
+ * @author Magnileve
+ */
+private static class Record {
+	private final Class<?> packetClass;
+	private final boolean inbound;
+	private final long nanos;
+	private final byte[] data;
+	
+	private Record(Class<?> packetClass, boolean inbound, long nanos, byte[] data) {
+		this.packetClass = packetClass;
+		this.inbound = inbound;
+		this.nanos = nanos;
+		this.data = data;
+	}
+}
+
+}
\ No newline at end of file
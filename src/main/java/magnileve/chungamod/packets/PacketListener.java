@@ -1,33 +1,106 @@
 package magnileve.chungamod.packets;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.Logger;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import magnileve.chungamod.Chung;
+import magnileve.chungamod.Tick;
+import magnileve.chungamod.modules.ContainsInit;
+import magnileve.chungamod.modules.Init;
+import magnileve.chungamod.util.ArrayBuildList;
+import magnileve.chungamod.util.MPSCRing;
 import net.minecraft.network.INetHandler;
+import net.minecraft.network.EnumConnectionState;
 import net.minecraft.network.NetworkManager;
 import net.minecraft.network.Packet;
 
 /**
  * Manages packet modifiers for the packet pipeline.
+ * Each packet is only passed to the modifiers handling its class.
+ * Modifiers are kept in immutable chains for each direction that are replaced when modifiers are added or removed,
+ * so packets are processed without locking.
+ * The modifiers for each class of packet are resolved once per chain and cached,
+ * so packets of classes without modifiers pass straight through.
+ * Asynchronous packet modifiers are given packets on a packet worker thread after synchronous packet modifiers,
+ * in the order packets were received and sent on the connection.
+ * Packets waiting for asynchronous packet modifiers are held in a bounded ring,
+ * and packets arriving while the ring is full are not given to asynchronous packet modifiers and are counted as dropped,
+ * with a warning logged at most once every {@value #DROP_LOG_INTERVAL_SECONDS} seconds per connection.
+ * Packets can also be queued to be sent together at the end of each {@link Tick#CLIENT_POST},
+ * up to {@code chungamod.packetBatch.cap} packets per tick.
  * @author Magnileve
  */
+@ContainsInit
 public class PacketListener extends ChannelDuplexHandler {
 
+private static final AtomicInteger ASYNC_THREAD_COUNT = new AtomicInteger();
+private static final ExecutorService ASYNC_EXECUTOR = Executors.newCachedThreadPool(run -> {
+	Thread thread = new Thread(run, "Chungamod packets #" + ASYNC_THREAD_COUNT.incrementAndGet());
+	thread.setDaemon(true);
+	return thread;
+});
+
 private static PacketListener instance;
 private static Logger log;
 
-private final List<PacketModifier> cPacketModifiers;
-private final List<PacketModifier> sPacketModifiers;
+private static final int CLIENT_CHAIN = 0, SERVER_CHAIN = 1, CLIENT_ASYNC_CHAIN = 2, SERVER_ASYNC_CHAIN = 3;
+private static final String BATCH_CAP_PROPERTY = "chungamod.packetBatch.cap";
+private static final int DEFAULT_BATCH_CAP = 64;
+/**
+ * Capacity of the ring of packets waiting for asynchronous packet modifiers.
+ */
+private static final int ASYNC_CAPACITY = 4096;
+/**
+ * Minimum time between warnings of packets dropped from a full ring.
+ */
+private static final int DROP_LOG_INTERVAL_SECONDS = 10;
+private static final long DROP_LOG_INTERVAL = DROP_LOG_INTERVAL_SECONDS * 1_000_000_000L;
+
+private static volatile int batchCap = DEFAULT_BATCH_CAP;
+
+private final Channel channel;
+private final NetworkManager network;
+private final MPSCRing<AsyncPacket> asyncPackets;
+private final AtomicInteger asyncPending;
+private final AtomicLong asyncDropped;
+private final AtomicLong lastDropLog;
+private final AtomicBoolean asyncScheduled;
+private final Queue<Packet<?>> queuedPackets;
+private final Runnable sendQueuedOnTick;
+
+private volatile Chain[] chains;
 
 public static void init(Logger logIn) {
 	log = logIn;
 }
 
+@Init
+private static void initProperties() {
+	Chung.SYSTEM.addProperty(BATCH_CAP_PROPERTY, Integer.toString(DEFAULT_BATCH_CAP), value -> {
+		try {
+			int newBatchCap = Integer.parseInt(value);
+			if(newBatchCap < 1) throw new IllegalArgumentException();
+			batchCap = newBatchCap;
+		} catch(IllegalArgumentException e) {
+			Chung.SYSTEM.setProperty(BATCH_CAP_PROPERTY, null);
+		}
+	});
+}
+
 /**
  * Initializes the packet listener.
  * @param network the new server connection
@@ -35,8 +108,9 @@ public static void init(Logger logIn) {
 public static void onConnect(NetworkManager network) {
 	if(instance == null) {
 		log.info("Creating packet listener");
-		instance = new PacketListener();
+		instance = new PacketListener(network.channel(), network);
 		network.channel().pipeline().addBefore("packet_handler", "chungamod_packet_listener", instance);
+		Tick.CLIENT_POST.addEndListener(instance.sendQueuedOnTick);
 	}
 }
 
@@ -45,12 +119,34 @@ public static void onConnect(NetworkManager network) {
  */
 public static void onDisconnect() {
 	log.info("Removing packet listener");
+	if(instance != null) Tick.CLIENT_POST.removeEndListener(instance.sendQueuedOnTick);
 	instance = null;
 }
 
-private PacketListener() {
-	cPacketModifiers = new CopyOnWriteArrayList<>();
-	sPacketModifiers = new CopyOnWriteArrayList<>();
+/**
+ * Creates a packet listener for a channel.  Used for server connections and by {@link PacketReplay}.
+ * @param channel the channel this listener is added to
+ */
+PacketListener(Channel channel) {
+	this(channel, null);
+}
+
+/**
+ * Creates a packet listener for a channel.
+ * @param channel the channel this listener is added to
+ * @param network the connection using the channel, or {@code null} if there is none
+ */
+private PacketListener(Channel channel, NetworkManager network) {
+	this.channel = channel;
+	this.network = network;
+	queuedPackets = new ConcurrentLinkedQueue<>();
+	sendQueuedOnTick = () -> sendQueued(batchCap);
+	asyncPackets = new MPSCRing<>(ASYNC_CAPACITY);
+	asyncPending = new AtomicInteger();
+	asyncDropped = new AtomicLong();
+	lastDropLog = new AtomicLong(System.nanoTime() - DROP_LOG_INTERVAL);
+	asyncScheduled = new AtomicBoolean();
+	chains = new Chain[] {Chain.EMPTY, Chain.EMPTY, Chain.EMPTY, Chain.EMPTY};
 }
 
 /**
@@ -62,65 +158,248 @@ public static PacketListener get() {
 
 @Override
 public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-	if(!sPacketModifiers.isEmpty() && msg instanceof Packet) {
+	PacketMetrics metrics = PacketMetrics.getActive();
+	if(metrics != null && msg instanceof Packet) metrics.recordInbound(msg.getClass());
+	PacketCapture capture = PacketCapture.getActive();
+	if(capture != null && msg instanceof Packet) capture.record((Packet<?>) msg, true);
+	Chain[] chains = this.chains;
+	if(chains[SERVER_CHAIN].modifiers.length != 0 && msg instanceof Packet) {
 		@SuppressWarnings("unchecked")
 		Packet<? extends INetHandler> packet = (Packet<? extends INetHandler>) msg;
-		for(PacketModifier packetModifier:sPacketModifiers) {
-			packet = packetModifier.onPacket(packet);
-			if(packet == null) return;
+		PacketModifier[] route = chains[SERVER_CHAIN].getRoute(packet.getClass());
+		if(route.length != 0) {
+			msg = modify(route, packet);
+			if(msg == null) return;
 		}
-		msg = packet;
 	}
+	if(chains[SERVER_ASYNC_CHAIN].modifiers.length != 0 && msg instanceof Packet) queueAsync(chains[SERVER_ASYNC_CHAIN].getRoute(msg.getClass()), msg);
 	super.channelRead(ctx, msg);
 }
 
 @Override
 public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-	if(!cPacketModifiers.isEmpty() && msg instanceof Packet) {
+	PacketMetrics metrics = PacketMetrics.getActive();
+	if(metrics != null && msg instanceof Packet) metrics.recordOutbound(msg.getClass());
+	PacketCapture capture = PacketCapture.getActive();
+	if(capture != null && msg instanceof Packet) capture.record((Packet<?>) msg, false);
+	Chain[] chains = this.chains;
+	if(chains[CLIENT_CHAIN].modifiers.length != 0 && msg instanceof Packet) {
 		@SuppressWarnings("unchecked")
 		Packet<? extends INetHandler> packet = (Packet<? extends INetHandler>) msg;
-		for(PacketModifier packetModifier:cPacketModifiers) {
-			packet = packetModifier.onPacket(packet);
-			if(packet == null) return;
+		PacketModifier[] route = chains[CLIENT_CHAIN].getRoute(packet.getClass());
+		if(route.length != 0) {
+			msg = modify(route, packet);
+			if(msg == null) return;
 		}
-		msg = packet;
 	}
+	if(chains[CLIENT_ASYNC_CHAIN].modifiers.length != 0 && msg instanceof Packet) queueAsync(chains[CLIENT_ASYNC_CHAIN].getRoute(msg.getClass()), msg);
 	super.write(ctx, msg, promise);
 }
 
+/**
+ * Queues a packet to be passed to asynchronous packet modifiers after previously queued packets.
+ * If the ring of queued packets is full, the packet is dropped, and a warning is logged unless one was logged recently.
+ * @param route the asynchronous packet modifiers
+ * @param packet the packet
+ */
+@SuppressWarnings("unchecked")
+private void queueAsync(PacketModifier[] route, Object packet) {
+	if(route.length == 0) return;
+	asyncPending.incrementAndGet();
+	if(!asyncPackets.offer(new AsyncPacket(route, (Packet<? extends INetHandler>) packet))) {
+		asyncPending.decrementAndGet();
+		long dropped = asyncDropped.incrementAndGet();
+		long now = System.nanoTime();
+		long last = lastDropLog.get();
+		if(now - last >= DROP_LOG_INTERVAL && lastDropLog.compareAndSet(last, now))
+			log.warn("Asynchronous packet modifiers are behind on {}, {} packets dropped so far", channel, dropped);
+		return;
+	}
+	if(asyncScheduled.compareAndSet(false, true)) ASYNC_EXECUTOR.execute(this::runAsync);
+}
+
+/**
+ * Passes queued packets to asynchronous packet modifiers until the queue is empty.
+ * Only one thread runs this method for a connection at a time, so that thread is the consumer of the ring of queued packets.
+ * A packet may be counted as pending before its producer has published it to the ring,
+ * so this thread yields between passes that find no packets instead of spinning.
+ */
+private void runAsync() {
+	boolean idle = false;
+	do {
+		if(idle) Thread.yield();
+		idle = true;
+		try {
+			PacketMetrics metrics = PacketMetrics.getActive();
+			for(AsyncPacket asyncPacket = asyncPackets.poll(); asyncPacket != null; asyncPacket = asyncPackets.poll()) {
+				idle = false;
+				for(PacketModifier packetModifier:asyncPacket.route) try {
+					if(metrics == null) packetModifier.onPacket(asyncPacket.packet);
+					else {
+						long start = System.nanoTime();
+						packetModifier.onPacket(asyncPacket.packet);
+						metrics.recordModifier(packetModifier, System.nanoTime() - start, false);
+					}
+				} catch(Throwable e) {
+					log.error("Exception in " + packetModifier + " for " + asyncPacket.packet, e);
+				}
+				asyncPending.decrementAndGet();
+			}
+		} finally {
+			asyncScheduled.set(false);
+		}
+	} while(asyncPending.get() != 0 && asyncScheduled.compareAndSet(false, true));
+}
+
+/**
+ * Passes a packet through packet modifiers, recording each call if {@link PacketMetrics} are active.
+ * @param route the packet modifiers
+ * @param packet the packet
+ * @return the modified packet, or {@code null} if a packet modifier dropped the packet
+ */
+private static Packet<? extends INetHandler> modify(PacketModifier[] route, Packet<? extends INetHandler> packet) {
+	PacketMetrics metrics = PacketMetrics.getActive();
+	if(metrics == null) for(int i = 0; i < route.length; i++) {
+		packet = route[i].onPacket(packet);
+		if(packet == null) return null;
+	} else for(int i = 0; i < route.length; i++) {
+		long start = System.nanoTime();
+		packet = route[i].onPacket(packet);
+		metrics.recordModifier(route[i], System.nanoTime() - start, packet == null);
+		if(packet == null) return null;
+	}
+	return packet;
+}
+
+/**
+ * Queues a packet to be sent to the server at the end of the current {@link Tick#CLIENT_POST} along with other queued packets.
+ * Queued packets are written in order and flushed to the connection once,
+ * and they pass through client packet modifiers like any other sent packet.
+ * Packets belonging to a connection state other than the current one are sent through {@link NetworkManager} instead.
+ * If more packets are queued than {@code chungamod.packetBatch.cap}, the rest are sent during the following ticks.
+ * This method is thread-safe.
+ * @param packet the packet
+ * @see #sendQueued()
+ */
+public void queue(Packet<?> packet) {
+	if(packet == null) throw new NullPointerException();
+	queuedPackets.offer(packet);
+}
+
+/**
+ * Sends every queued packet now in one batch instead of waiting for the end of the tick.
+ * @see #queue(Packet)
+ */
+public void sendQueued() {
+	sendQueued(Integer.MAX_VALUE);
+}
+
+/**
+ * Gets the number of packets waiting to be sent.
+ * @return the number of queued packets
+ */
+public int getQueuedPackets() {
+	return queuedPackets.size();
+}
+
+/**
+ * Writes queued packets to the connection on its event loop and flushes them once.
+ * If the connection is closed, queued packets are discarded.
+ * Packets not belonging to the current connection state are passed to {@link NetworkManager#sendPacket(Packet)},
+ * which changes the state as it does for any other sent packet.
+ * @param limit the maximum number of packets to be sent
+ */
+private void sendQueued(int limit) {
+	if(queuedPackets.isEmpty()) return;
+	if(!channel.isOpen()) {
+		queuedPackets.clear();
+		return;
+	}
+	ArrayBuildList<Packet<?>> list = new ArrayBuildList<>(new Packet<?>[Math.min(limit, queuedPackets.size())]);
+	for(Packet<?> packet; list.size() < limit && (packet = queuedPackets.poll()) != null;) list.add(packet);
+	Packet<?>[] batch = list.toArray();
+	channel.eventLoop().execute(() -> {
+		if(!channel.isActive()) return;
+		boolean written = false;
+		for(Packet<?> packet:batch) {
+			if(network == null || EnumConnectionState.getFromPacket(packet) == channel.attr(NetworkManager.PROTOCOL_ATTRIBUTE_KEY).get()) {
+				channel.write(packet, channel.voidPromise());
+				written = true;
+			} else {
+				if(written) {
+					channel.flush();
+					written = false;
+				}
+				network.sendPacket(packet);
+			}
+		}
+		if(written) channel.flush();
+	});
+}
+
 /**
  * Adds a packet modifier to the packet listener.
  * @param packetModifier packet modifier to be added
  * @param type determines if the packet modifier should be ran on client packets, server packets, or all packets
  * @param priority priority for the packet modifier to be ran
- * @return the {@code PacketModifier} containing the packet modifier, its priority, and its type
+ * @param packetClasses classes of packets to be passed to the packet modifier, including subclasses, or no classes for all packets
+ * @return the {@code PacketModifier} containing the packet modifier, its priority, its type, and its packet classes
+ * @throws IllegalArgumentException if a class is not a {@link Packet}
+ */
+public PacketModifier add(Priority priority, Type type, PacketModifierCore packetModifier, Class<?>... packetClasses) {
+	return add(priority, type, packetModifier, false, packetClasses);
+}
+
+/**
+ * Adds an asynchronous packet modifier to the packet listener.
+ * The packet modifier is called on a packet worker thread with each packet after synchronous packet modifiers have run,
+ * in the order packets were received and sent on the connection.
+ * Since the packet has already continued through the pipeline, the value returned by the packet modifier is ignored;
+ * changes in response to a packet should be deferred, such as by passing them to the client thread through {@link magnileve.chungamod.Tick#run(Runnable)}.
+ * @param packetModifier packet modifier to be added
+ * @param type determines if the packet modifier should be ran on client packets, server packets, or all packets
+ * @param priority priority for the packet modifier to be ran among other asynchronous packet modifiers
+ * @param packetClasses classes of packets to be passed to the packet modifier, including subclasses, or no classes for all packets
+ * @return the {@code PacketModifier} containing the packet modifier, its priority, its type, and its packet classes
+ * @throws IllegalArgumentException if a class is not a {@link Packet}
  */
-public PacketModifier add(Priority priority, Type type, PacketModifierCore packetModifier) {
-	PacketModifier newPacketModifier = new PacketModifier(priority, type) {
+public PacketModifier addAsync(Priority priority, Type type, PacketModifierCore packetModifier, Class<?>... packetClasses) {
+	return add(priority, type, packetModifier, true, packetClasses);
+}
+
+private PacketModifier add(Priority priority, Type type, PacketModifierCore packetModifier, boolean async, Class<?>[] packetClasses) {
+	PacketModifier newPacketModifier = new PacketModifier(priority, type, packetClasses) {
 		@Override
 		public Packet<? extends INetHandler> onPacket(Packet<? extends INetHandler> packet) {
 			return packetModifier.onPacket(packet);
 		}
+		
+		@Override
+		public boolean isAsync() {
+			return async;
+		}
+		
+		@Override
+		Object getHandler() {
+			return packetModifier;
+		}
 	};
 	log.debug("Adding {}", newPacketModifier);
-	if(type == Type.CLIENT || type == Type.ALL) addSorted(cPacketModifiers, newPacketModifier, priority);
-	if(type == Type.SERVER || type == Type.ALL) addSorted(sPacketModifiers, newPacketModifier, priority);
+	synchronized(this) {
+		Chain[] newChains = chains.clone();
+		if(type == Type.CLIENT || type == Type.ALL) {
+			int index = async ? CLIENT_ASYNC_CHAIN : CLIENT_CHAIN;
+			newChains[index] = newChains[index].add(newPacketModifier);
+		}
+		if(type == Type.SERVER || type == Type.ALL) {
+			int index = async ? SERVER_ASYNC_CHAIN : SERVER_CHAIN;
+			newChains[index] = newChains[index].add(newPacketModifier);
+		}
+		chains = newChains;
+	}
 	return newPacketModifier;
 }
 
-private static void addSorted(List<PacketModifier> list, PacketModifier input, Priority priority) {
-	int low = 0;
-	int high = list.size();
-	int middle = priority.ordinal() * (high / Priority.values().length);
-	if(high > 1) do {
-		if(list.get(middle).getPriority().compareTo(priority) > 0) high = middle;
-		else low = middle;
-		middle = (high + low) / 2;
-	} while(high - low > 1);
-	if(low == 0 && high - low == 1 && list.get(0).getPriority().compareTo(priority) > 0) high = 0;
-	list.add(high, input);
-}
-
 /**
  * Adds a packet modifier to the packet listener.
  * @param packetModifier packet modifier to be added
@@ -157,39 +436,46 @@ public void remove(PacketModifier packetModifier) {
 	log.debug("Removing {}", packetModifier);
 	if(packetModifier == null) return;
 	Type type = packetModifier.getType();
-	if(type == Type.CLIENT || type == Type.ALL) removeSorted(cPacketModifiers, packetModifier, packetModifier.getPriority());
-	if(type == Type.SERVER || type == Type.ALL) removeSorted(sPacketModifiers, packetModifier, packetModifier.getPriority());
-}
-
-private static void removeSorted(List<PacketModifier> list, PacketModifier input, Priority priority) {
-	int low = 0;
-	int high = list.size();
-	int middle = priority.ordinal() * (high / Priority.values().length);
-	if(high > 1) do {
-		int comparison = list.get(middle).getPriority().compareTo(priority);
-		if(comparison == 0) break;
-		if(comparison > 0) high = middle;
-		else low = middle;
-		middle = (high + low) / 2;
-	} while(high - low > 1);
-	for(int i = middle; i < list.size(); i++) {
-		PacketModifier fromList = list.get(i);
-		if(fromList.equals(input)) {
-			list.remove(i);
-			return;
+	boolean async = packetModifier.isAsync();
+	synchronized(this) {
+		Chain[] newChains = chains.clone();
+		if(type == Type.CLIENT || type == Type.ALL) {
+			int index = async ? CLIENT_ASYNC_CHAIN : CLIENT_CHAIN;
+			newChains[index] = newChains[index].remove(packetModifier);
 		}
-		if(!fromList.getPriority().equals(priority)) break;
-	}
-	for(int i = middle - 1; i >= 0; i--) {
-		PacketModifier fromList = list.get(i);
-		if(fromList.equals(input)) {
-			list.remove(i);
-			return;
+		if(type == Type.SERVER || type == Type.ALL) {
+			int index = async ? SERVER_ASYNC_CHAIN : SERVER_CHAIN;
+			newChains[index] = newChains[index].remove(packetModifier);
 		}
-		if(!fromList.getPriority().equals(priority)) break;
+		chains = newChains;
 	}
 }
 
+/**
+ * Indicates if packets are queued or being passed to asynchronous packet modifiers.
+ * @return {@code true} if asynchronous packet modifiers have not finished all queued packets
+ */
+boolean isAsyncPending() {
+	return asyncPending.get() != 0;
+}
+
+/**
+ * Gets the number of packets not given to asynchronous packet modifiers because the ring of queued packets was full.
+ * @return the total number of dropped packets
+ */
+public long getAsyncDropped() {
+	return asyncDropped.get();
+}
+
+/**
+ * Logs an exception thrown while handling packets.
+ * @param message the message
+ * @param e the exception
+ */
+static void logError(String message, Throwable e) {
+	log.error(message, e);
+}
+
 /**
  * Packet modifiers are ordered by their assigned priorities when registered
  * so that packet modifiers with a higher priority (lower ordinal) are processed first for a packet.
@@ -207,4 +493,92 @@ public enum Type {
 	CLIENT, SERVER, ALL;
 }
 
+/**
+ * A packet queued for asynchronous packet modifiers.
+ * @author Magnileve
+ */
+private static class AsyncPacket {
+	private final PacketModifier[] route;
+	private final Packet<? extends INetHandler> packet;
+	
+	private AsyncPacket(PacketModifier[] route, Packet<? extends INetHandler> packet) {
+		this.route = route;
+		this.packet = packet;
+	}
+}
+
+/**
+ * An immutable chain of packet modifiers in order of priority, along with the modifiers resolved from the chain for each class of packet.
+ * @author Magnileve
+ */
+private static final class Chain {
+	private static final Chain EMPTY = new Chain(new PacketModifier[Priority.values().length][0]);
+	
+	private final PacketModifier[][] byPriority;
+	private final PacketModifier[] modifiers;
+	private final Map<Class<?>, PacketModifier[]> routes;
+	
+	private Chain(PacketModifier[][] byPriority) {
+		this.byPriority = byPriority;
+		int length = 0;
+		for(PacketModifier[] priorityModifiers:byPriority) length += priorityModifiers.length;
+		modifiers = new PacketModifier[length];
+		int i = 0;
+		for(PacketModifier[] priorityModifiers:byPriority) {
+			System.arraycopy(priorityModifiers, 0, modifiers, i, priorityModifiers.length);
+			i += priorityModifiers.length;
+		}
+		routes = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Creates a chain with a packet modifier added after the packet modifiers of the same priority.
+	 * @param packetModifier the packet modifier
+	 * @return a new chain
+	 */
+	private Chain add(PacketModifier packetModifier) {
+		int priority = packetModifier.getPriority().ordinal();
+		PacketModifier[][] newByPriority = byPriority.clone();
+		PacketModifier[] priorityModifiers = byPriority[priority];
+		newByPriority[priority] = Arrays.copyOf(priorityModifiers, priorityModifiers.length + 1);
+		newByPriority[priority][priorityModifiers.length] = packetModifier;
+		return new Chain(newByPriority);
+	}
+	
+	/**
+	 * Creates a chain without a packet modifier.
+	 * @param packetModifier the packet modifier
+	 * @return a new chain, or this chain if it does not contain the packet modifier
+	 */
+	private Chain remove(PacketModifier packetModifier) {
+		int priority = packetModifier.getPriority().ordinal();
+		PacketModifier[] priorityModifiers = byPriority[priority];
+		for(int i = 0; i < priorityModifiers.length; i++) if(priorityModifiers[i] == packetModifier) {
+			PacketModifier[] newPriorityModifiers = new PacketModifier[priorityModifiers.length - 1];
+			System.arraycopy(priorityModifiers, 0, newPriorityModifiers, 0, i);
+			System.arraycopy(priorityModifiers, i + 1, newPriorityModifiers, i, newPriorityModifiers.length - i);
+			PacketModifier[][] newByPriority = byPriority.clone();
+			newByPriority[priority] = newPriorityModifiers;
+			return new Chain(newByPriority);
+		}
+		return this;
+	}
+	
+	/**
+	 * Gets the modifiers of this chain handling a class of packet, resolving them if they have not been resolved yet.
+	 * @param packetClass class of a packet
+	 * @return the modifiers handling {@code packetClass} in order of priority
+	 */
+	private PacketModifier[] getRoute(Class<?> packetClass) {
+		PacketModifier[] route = routes.get(packetClass);
+		if(route == null) {
+			ArrayBuildList<PacketModifier> list = new ArrayBuildList<>(new PacketModifier[1]);
+			for(int i = 0; i < modifiers.length; i++) if(modifiers[i].handles(packetClass)) list.add(modifiers[i]);
+			route = list.toArray();
+			routes.put(packetClass, route);
+		}
+		return route;
+	}
+}
+
 }
\ No newline at end of file
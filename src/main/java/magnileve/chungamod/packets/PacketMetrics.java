@@ -0,0 +1,412 @@
+package magnileve.chungamod.packets;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONWriter;
+
+import magnileve.chungamod.Chung;
+import magnileve.chungamod.Commands.Argument;
+import magnileve.chungamod.Commands.Command;
+import magnileve.chungamod.Commands.CommandArgumentException;
+import magnileve.chungamod.Commands.CommandFactory;
+import magnileve.chungamod.Commands.ContainsCommand;
+import magnileve.chungamod.Tick;
+import magnileve.chungamod.TickProfiler;
+import magnileve.chungamod.modules.ContainsInit;
+import magnileve.chungamod.modules.Init;
+import magnileve.chungamod.modules.ModuleID;
+import magnileve.chungamod.settings.AbstractSettingManager;
+import magnileve.chungamod.tasks.AsyncTasks;
+import magnileve.chungamod.util.MCUtil;
+import magnileve.chungamod.util.json.GoodLookingJSONWriter;
+
+/**
+ * Records the number of packets received and sent of each packet class,
+ * and the number of calls, time taken, and packets dropped by each {@link PacketModifier}.
+ * Values are recorded on the network thread using striped counters, so recording does not contend with readers.
+ * Metrics are controlled through the command {@code packetmetrics}.
+ * While metrics are recorded, they are also exported as JSON to the file {@value #ROLLING_FILE} in the Chungamod profiles directory
+ * every {@code chungamod.packetMetrics.dumpSeconds} seconds, or never if the property is {@code 0}.
+ * Each periodic export replaces the previous one, while exports from the command are kept in separate files.
+ * @author Magnileve
+ */
+@ContainsCommand
+@ContainsInit
+public class PacketMetrics {
+
+private static final String DUMP_PROPERTY = "chungamod.packetMetrics.dumpSeconds";
+private static final String PROFILES_DIRECTORY = "profiles";
+private static final String ROLLING_FILE = "packets-latest.json";
+private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+private static final int DUMP_ENTRIES = 5;
+
+private static volatile PacketMetrics active;
+private static Tick.Registration dumpRegistration = Tick.Registration.INACTIVE;
+
+private final Map<Class<?>, LongAdder> inbound;
+private final Map<Class<?>, LongAdder> outbound;
+private final Map<PacketModifier, ModifierStats> modifiers;
+
+private volatile long startTime;
+
+/**
+ * Creates a new {@code PacketMetrics} with no recorded values.
+ */
+public PacketMetrics() {
+	inbound = new ConcurrentHashMap<>();
+	outbound = new ConcurrentHashMap<>();
+	modifiers = new ConcurrentHashMap<>();
+	startTime = System.currentTimeMillis();
+}
+
+@Init
+private static void initProperties() {
+	Chung.SYSTEM.addProperty(DUMP_PROPERTY, "0", value -> {
+		int seconds;
+		try {
+			seconds = Integer.parseInt(value);
+			if(seconds < 0) throw new NumberFormatException();
+		} catch(NumberFormatException e) {
+			Chung.SYSTEM.setProperty(DUMP_PROPERTY, null);
+			return;
+		}
+		dumpRegistration.cancel();
+		int ticks = seconds * 20;
+		dumpRegistration = ticks == 0 ? Tick.Registration.INACTIVE : Tick.MAIN.add(() -> {
+			PacketMetrics metrics = active;
+			if(metrics != null) AsyncTasks.trySubmit(() -> {
+				try {
+					metrics.exportRolling();
+				} catch(IOException e) {
+					PacketListener.logError("Unable to export packet metrics", e);
+				}
+			});
+			return ticks;
+		}, ticks);
+	});
+}
+
+/**
+ * Gets the metrics currently being recorded.
+ * @return the active metrics, or {@code null} if metrics are not being recorded
+ */
+public static PacketMetrics getActive() {
+	return active;
+}
+
+/**
+ * Sets the metrics to be recorded by the packet listener.
+ * @param metrics the metrics, or {@code null} to stop recording
+ */
+public static void setActive(PacketMetrics metrics) {
+	active = metrics;
+}
+
+/**
+ * Records a packet received from the server.
+ * @param packetClass class of the packet
+ */
+void recordInbound(Class<?> packetClass) {
+	increment(inbound, packetClass);
+}
+
+/**
+ * Records a packet sent by the client.
+ * @param packetClass class of the packet
+ */
+void recordOutbound(Class<?> packetClass) {
+	increment(outbound, packetClass);
+}
+
+private static void increment(Map<Class<?>, LongAdder> counts, Class<?> packetClass) {
+	LongAdder count = counts.get(packetClass);
+	if(count == null) count = counts.computeIfAbsent(packetClass, c -> new LongAdder());
+	count.increment();
+}
+
+/**
+ * Records a call to a packet modifier.
+ * @param packetModifier the packet modifier
+ * @param nanos time taken by the call in nanoseconds
+ * @param dropped if the packet modifier dropped the packet
+ */
+void recordModifier(PacketModifier packetModifier, long nanos, boolean dropped) {
+	ModifierStats stats = modifiers.get(packetModifier);
+	if(stats == null) stats = modifiers.computeIfAbsent(packetModifier, ModifierStats::new);
+	stats.calls.increment();
+	stats.totalNanos.add(nanos);
+	stats.maxNanos.accumulate(nanos);
+	if(dropped) stats.drops.increment();
+}
+
+/**
+ * Gets the number of packets received of each packet class.
+ * @return a new map of each packet class to its count
+ */
+public Map<Class<?>, Long> getInbound() {
+	return sum(inbound);
+}
+
+/**
+ * Gets the number of packets sent of each packet class.
+ * @return a new map of each packet class to its count
+ */
+public Map<Class<?>, Long> getOutbound() {
+	return sum(outbound);
+}
+
+private static Map<Class<?>, Long> sum(Map<Class<?>, LongAdder> counts) {
+	Map<Class<?>, Long> map = new HashMap<>();
+	for(Map.Entry<Class<?>, LongAdder> entry:counts.entrySet()) map.put(entry.getKey(), entry.getValue().sum());
+	return map;
+}
+
+/**
+ * Gets the statistics of each packet modifier, sorted by total time in descending order.
+ * @return a new list of packet modifier statistics
+ */
+public List<ModifierStats> getModifiers() {
+	List<ModifierStats> list = new ArrayList<>(modifiers.values());
+	list.sort((o1, o2) -> Long.compare(o2.getTotalNanos(), o1.getTotalNanos()));
+	return list;
+}
+
+/**
+ * Removes all recorded values.
+ */
+public void reset() {
+	inbound.clear();
+	outbound.clear();
+	modifiers.clear();
+	startTime = System.currentTimeMillis();
+}
+
+/**
+ * Writes these metrics as a JSON object.
+ * @param w writes JSON
+ */
+public void writeJSON(JSONWriter w) {
+	w.object().key("milliseconds").value(System.currentTimeMillis() - startTime).key("inbound");
+	writeCounts(w, inbound);
+	w.key("outbound");
+	writeCounts(w, outbound);
+	w.key("modifiers").array();
+	for(ModifierStats stats:getModifiers()) {
+		ModuleID<?> m = stats.getOwner();
+		w.object().key("type").value(stats.getHandlerType().getName());
+		if(m != null) w.key("module").value(m.getName()).key("plugin").value(m.getPluginID());
+		w.key("priority").value(stats.packetModifier.getPriority().name())
+				.key("calls").value(stats.getCalls())
+				.key("drops").value(stats.getDrops())
+				.key("totalNanos").value(stats.getTotalNanos())
+				.key("maxNanos").value(stats.getMaxNanos())
+				.endObject();
+	}
+	w.endArray().endObject();
+}
+
+private static void writeCounts(JSONWriter w, Map<Class<?>, LongAdder> counts) {
+	w.object();
+	for(Map.Entry<Class<?>, LongAdder> entry:counts.entrySet()) w.key(entry.getKey().getName()).value(entry.getValue().sum());
+	w.endObject();
+}
+
+/**
+ * Exports these metrics as JSON to a new file in the Chungamod profiles directory.
+ * @return path of the new file
+ * @throws IOException if an I/O error occurs
+ */
+public Path export() throws IOException {
+	Path file = getProfilesDirectory().resolve("packets-" + LocalDateTime.now().format(FILE_TIME_FORMAT) + ".json");
+	write(file);
+	return file;
+}
+
+/**
+ * Exports these metrics as JSON to the file {@value #ROLLING_FILE} in the Chungamod profiles directory,
+ * replacing the previous export to that file.
+ * @return path of the file
+ * @throws IOException if an I/O error occurs
+ */
+public Path exportRolling() throws IOException {
+	Path dir = getProfilesDirectory();
+	Path file = dir.resolve(ROLLING_FILE);
+	Path tempFile = dir.resolve(ROLLING_FILE + ".tmp");
+	write(tempFile);
+	try {
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	} catch(AtomicMoveNotSupportedException e) {
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+	return file;
+}
+
+private static Path getProfilesDirectory() throws IOException {
+	Path dir = Paths.get(Chung.CHUNGAMOD_DIRECTORY, PROFILES_DIRECTORY);
+	if(!Files.isDirectory(dir)) Files.createDirectories(dir);
+	return dir;
+}
+
+private void write(Path file) throws IOException {
+	try(Writer write = Files.newBufferedWriter(file)) {
+		int indent = AbstractSettingManager.getJSONIndent();
+		writeJSON(indent < 0 ? new JSONWriter(write) : new GoodLookingJSONWriter(write, indent));
+	}
+}
+
+private static void appendTop(StringBuilder str, String name, Map<Class<?>, Long> counts) {
+	long total = 0;
+	for(long count:counts.values()) total += count;
+	str.append('\n').append(name).append(": ").append(total).append(" packets");
+	counts.entrySet().stream().sorted((o1, o2) -> Long.compare(o2.getValue(), o1.getValue())).limit(DUMP_ENTRIES)
+			.forEach(entry -> str.append("\n- ").append(entry.getKey().getSimpleName()).append(": ").append(entry.getValue()));
+}
+
+@Override
+public String toString() {
+	StringBuilder str = new StringBuilder("\n----- Packet Metrics: -----");
+	appendTop(str, "Inbound", getInbound());
+	appendTop(str, "Outbound", getOutbound());
+	List<ModifierStats> list = getModifiers();
+	str.append("\nModifiers: ").append(list.size());
+	for(int i = 0; i < list.size() && i < DUMP_ENTRIES; i++) str.append("\n- ").append(list.get(i));
+	return str.toString();
+}
+
+@CommandFactory(name = "packetmetrics", description = "Records packet counts and packet modifier latency")
+@Argument(index = 0, name = "action", description = "start, stop, reset, dump, or export")
+static Command packetMetricsCommand() {
+	return args -> {
+		switch(args[0].toLowerCase()) {
+		case "start":
+			return () -> {
+				if(active == null) active = new PacketMetrics();
+				MCUtil.sendMessage("Packet metrics started");
+			};
+		case "stop":
+			return () -> {
+				active = null;
+				MCUtil.sendMessage("Packet metrics stopped");
+			};
+		case "reset":
+			return () -> {
+				PacketMetrics metrics = active;
+				if(metrics != null) metrics.reset();
+				MCUtil.sendMessage("Packet metrics reset");
+			};
+		case "dump":
+			return () -> {
+				PacketMetrics metrics = active;
+				MCUtil.sendMessage(metrics == null ? "Packet metrics are not running" : metrics.toString());
+			};
+		case "export":
+			return () -> {
+				PacketMetrics metrics = active;
+				if(metrics == null) MCUtil.sendMessage("Packet metrics are not running");
+				else try {
+					MCUtil.sendMessage("Packet metrics exported to " + metrics.export());
+				} catch(IOException e) {
+					MCUtil.sendMessage("Unable to export packet metrics: " + e.getMessage());
+				}
+			};
+		default:
+			throw new CommandArgumentException("Unknown action: " + args[0]);
+		}
+	};
+}
+
+/**
+ * Contains the statistics of a packet modifier.
+ * @author Magnileve
+ */
+public static class ModifierStats {
+	private final PacketModifier packetModifier;
+	private final LongAdder calls;
+	private final LongAdder drops;
+	private final LongAdder totalNanos;
+	private final LongAccumulator maxNanos;
+
+	private ModifierStats(PacketModifier packetModifier) {
+		this.packetModifier = packetModifier;
+		calls = new LongAdder();
+		drops = new LongAdder();
+		totalNanos = new LongAdder();
+		maxNanos = new LongAccumulator(Math::max, 0);
+	}
+
+	/**
+	 * @return the packet modifier
+	 */
+	public PacketModifier getPacketModifier() {
+		return packetModifier;
+	}
+
+	/**
+	 * @return the type of the code handling packets for the packet modifier
+	 */
+	public Class<?> getHandlerType() {
+		return packetModifier.getHandler().getClass();
+	}
+
+	/**
+	 * @return the module declaring the packet modifier, or {@code null} if one is not found
+	 * @see TickProfiler#getOwner(Class)
+	 */
+	public ModuleID<?> getOwner() {
+		return TickProfiler.getOwner(getHandlerType());
+	}
+
+	/**
+	 * @return the number of packets passed to the packet modifier
+	 */
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	/**
+	 * @return the number of packets dropped by the packet modifier
+	 */
+	public long getDrops() {
+		return drops.sum();
+	}
+
+	/**
+	 * @return the total time taken by the packet modifier in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/**
+	 * @return the longest time taken by a call to the packet modifier in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	@Override
+	public String toString() {
+		ModuleID<?> m = getOwner();
+		long callCount = getCalls();
+		return (m == null ? getHandlerType().getName() : m.getName() + " (" + getHandlerType().getSimpleName() + ")") + ": " +
+				callCount + " calls, " + getDrops() + " drops, mean " + (callCount == 0 ? 0 : getTotalNanos() / callCount) +
+				"ns, max " + getMaxNanos() + "ns";
+	}
+}
+
+}
\ No newline at end of file
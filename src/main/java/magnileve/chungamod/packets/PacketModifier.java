@@ -1,25 +1,46 @@
 package magnileve.chungamod.packets;
 
+import java.util.Arrays;
+
 import magnileve.chungamod.packets.PacketListener.Priority;
 import magnileve.chungamod.packets.PacketListener.Type;
+import net.minecraft.network.Packet;
 
 /**
- * A packet modifier implementing {@link PacketModifierCore} and additionally containing a {@link Priority} and {@link Type}.
+ * A packet modifier implementing {@link PacketModifierCore} and additionally containing a {@link Priority}, a {@link Type},
+ * and optionally the classes of packets it handles.
  * @author Magnileve
  */
 public abstract class PacketModifier implements PacketModifierCore {
 
+private static final Class<?>[] ALL_PACKETS = new Class<?>[0];
+
 private final Priority priority;
 private final Type type;
+private final Class<?>[] packetClasses;
 
 /**
- * Creates a new {@code PacketModifier} with a priority and type.
+ * Creates a new {@code PacketModifier} with a priority and type that handles all packets.
  * @param priority the priority
  * @param type the packet type
  */
 public PacketModifier(Priority priority, Type type) {
+	this(priority, type, ALL_PACKETS);
+}
+
+/**
+ * Creates a new {@code PacketModifier} with a priority and type that only handles packets of the given classes and their subclasses.
+ * @param priority the priority
+ * @param type the packet type
+ * @param packetClasses classes of packets handled by this modifier, or no classes to handle all packets
+ * @throws IllegalArgumentException if a class is not a {@link Packet}
+ */
+public PacketModifier(Priority priority, Type type, Class<?>... packetClasses) {
+	for(Class<?> packetClass:packetClasses) if(!Packet.class.isAssignableFrom(packetClass))
+		throw new IllegalArgumentException(packetClass + " is not a packet");
 	this.priority = priority;
 	this.type = type;
+	this.packetClasses = packetClasses.length == 0 ? ALL_PACKETS : packetClasses.clone();
 }
 
 /**
@@ -38,9 +59,46 @@ public Type getType() {
 	return type;
 }
 
+/**
+ * Gets the classes of packets this modifier handles.
+ * @return a new array of the classes of packets this modifier handles, or an empty array if it handles all packets
+ */
+public Class<?>[] getPacketClasses() {
+	return packetClasses.clone();
+}
+
+/**
+ * Determines if this modifier handles packets of a class.
+ * @param packetClass class of a packet
+ * @return {@code true} if packets of {@code packetClass} should be passed to this modifier; {@code false} otherwise
+ */
+public boolean handles(Class<?> packetClass) {
+	if(packetClasses.length == 0) return true;
+	for(Class<?> handledClass:packetClasses) if(handledClass.isAssignableFrom(packetClass)) return true;
+	return false;
+}
+
+/**
+ * Determines if this modifier observes packets on a packet worker thread instead of modifying them on the network thread.
+ * @return {@code true} if this modifier is asynchronous
+ * @see PacketListener#addAsync(Priority, Type, PacketModifierCore, Class...)
+ */
+public boolean isAsync() {
+	return false;
+}
+
+/**
+ * Gets the object handling packets for this modifier, which is used to identify this modifier.
+ * @return the handler of this modifier
+ */
+Object getHandler() {
+	return this;
+}
+
 @Override
 public String toString() {
-	return "PacketModifier with priority: " + priority + ", type: " + type;
+	return "PacketModifier with priority: " + priority + ", type: " + type +
+			(packetClasses.length == 0 ? "" : ", packets: " + Arrays.toString(packetClasses));
 }
 
 }
\ No newline at end of file
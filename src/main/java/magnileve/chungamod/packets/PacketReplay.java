@@ -0,0 +1,311 @@
+package magnileve.chungamod.packets;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.network.INetHandler;
+import net.minecraft.network.Packet;
+import net.minecraft.network.PacketBuffer;
+
+/**
+ * Drives packets recorded by {@link PacketCapture} through a {@link PacketListener} on an {@link EmbeddedChannel},
+ * measuring throughput and the latency of each packet modifier without a server connection.
+ * Packets are decoded before each iteration is timed, so only the packet listener and its modifiers are measured.
+ * Packets of classes that cannot be instantiated or decoded are skipped.
+ * A capture ending in the middle of a record, such as one whose recording was interrupted,
+ * is replayed up to its last complete record and reported as truncated.
+ * <p>
+ * This class may be run headless with the arguments {@code <capture file> [iterations] [modifier classes...]},
+ * where each modifier class implements {@link PacketModifierCore} and has a no-argument constructor.
+ * </p>
+ * @author Magnileve
+ */
+public class PacketReplay {
+
+private final List<Record> records;
+private final int skipped;
+private final boolean truncated;
+
+private PacketReplay(List<Record> records, int skipped, boolean truncated) {
+	this.records = records;
+	this.skipped = skipped;
+	this.truncated = truncated;
+}
+
+/**
+ * Loads a packet capture.
+ * @param file the capture file
+ * @return a new {@code PacketReplay} of the capture
+ * @throws IOException if an I/O error occurs, the file is not a packet capture, or it contains an invalid record
+ */
+public static PacketReplay load(Path file) throws IOException {
+	List<Record> records = new ArrayList<>();
+	List<Constructor<? extends Packet<?>>> classes = new ArrayList<>();
+	int skipped = 0;
+	boolean truncated = false;
+	try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+		if(in.readInt() != PacketCapture.MAGIC) throw new IOException("Not a packet capture: " + file);
+		short version = in.readShort();
+		if(version != PacketCapture.VERSION) throw new IOException("Unsupported packet capture version " + version + ": " + file);
+		in.readLong();
+		for(;;) {
+			int type = in.read();
+			if(type == -1) break;
+			try {
+				switch(type) {
+				case PacketCapture.CLASS_RECORD:
+					int id = in.readShort();
+					String name = in.readUTF();
+					while(classes.size() <= id) classes.add(null);
+					classes.set(id, getConstructor(name));
+					break;
+				case PacketCapture.INBOUND_RECORD:
+				case PacketCapture.OUTBOUND_RECORD:
+					int classID = in.readShort();
+					in.readLong();
+					int length = in.readInt();
+					if(length < 0) throw new IOException("Invalid packet length " + length + " in packet capture: " + file);
+					byte[] data = new byte[length];
+					in.readFully(data);
+					Constructor<? extends Packet<?>> constructor = classID < classes.size() ? classes.get(classID) : null;
+					if(constructor == null) skipped++;
+					else records.add(new Record(constructor, type == PacketCapture.INBOUND_RECORD, data));
+					break;
+				default:
+					throw new IOException("Unknown record type " + type + " in packet capture: " + file);
+				}
+			} catch(EOFException e) {
+				truncated = true;
+				break;
+			}
+		}
+	}
+	return new PacketReplay(records, skipped, truncated);
+}
+
+@SuppressWarnings("unchecked")
+private static Constructor<? extends Packet<?>> getConstructor(String className) {
+	try {
+		Class<?> packetClass = Class.forName(className);
+		if(!Packet.class.isAssignableFrom(packetClass)) return null;
+		Constructor<? extends Packet<?>> constructor = (Constructor<? extends Packet<?>>) packetClass.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		return constructor;
+	} catch(ReflectiveOperationException | LinkageError | SecurityException e) {
+		return null;
+	}
+}
+
+/**
+ * Gets the number of packets to be replayed in each iteration.
+ * @return the number of decodable packets in the capture
+ */
+public int getPackets() {
+	return records.size();
+}
+
+/**
+ * Gets the number of recorded packets whose classes could not be loaded or instantiated.
+ * @return the number of skipped packets
+ */
+public int getSkipped() {
+	return skipped;
+}
+
+/**
+ * Indicates if the capture ended in the middle of a record, in which case only its complete records are replayed.
+ * @return {@code true} if the capture is truncated
+ */
+public boolean isTruncated() {
+	return truncated;
+}
+
+/**
+ * Replays the capture through a new packet listener.
+ * While replaying, {@link PacketMetrics} are active for the packet listener and packet capture is suspended.
+ * @param setup adds packet modifiers to the packet listener before replaying
+ * @param iterations number of times the capture is replayed
+ * @return the results of the replay
+ */
+public Result run(Consumer<? super PacketListener> setup, int iterations) {
+	if(iterations < 1) throw new IllegalArgumentException("Iterations must be positive");
+	EmbeddedChannel channel = new EmbeddedChannel();
+	PacketListener listener = new PacketListener(channel);
+	channel.pipeline().addLast(listener);
+	if(setup != null) setup.accept(listener);
+	PacketMetrics prevMetrics = PacketMetrics.getActive();
+	PacketCapture prevCapture = PacketCapture.getActive();
+	PacketMetrics metrics = new PacketMetrics();
+	PacketMetrics.setActive(metrics);
+	PacketCapture.setActive(null);
+	long packets = 0;
+	int errors = 0;
+	long nanos = 0;
+	try {
+		for(int i = 0; i < iterations; i++) {
+			List<Packet<?>> decoded = new ArrayList<>(records.size());
+			List<Record> decodedRecords = new ArrayList<>(records.size());
+			for(Record record:records) {
+				Packet<?> packet = record.decode();
+				if(packet != null) {
+					decoded.add(packet);
+					decodedRecords.add(record);
+				}
+			}
+			long start = System.nanoTime();
+			for(int j = 0; j < decoded.size(); j++) try {
+				if(decodedRecords.get(j).inbound) channel.writeInbound(decoded.get(j));
+				else channel.writeOutbound(decoded.get(j));
+			} catch(Exception e) {
+				errors++;
+			}
+			while(listener.isAsyncPending()) Thread.yield();
+			nanos += System.nanoTime() - start;
+			packets += decoded.size();
+			channel.releaseInbound();
+			channel.releaseOutbound();
+		}
+	} finally {
+		PacketMetrics.setActive(prevMetrics);
+		PacketCapture.setActive(prevCapture);
+		channel.finishAndReleaseAll();
+	}
+	return new Result(packets, errors, listener.getAsyncDropped(), nanos, metrics);
+}
+
+/**
+ * Replays a packet capture headless and prints the results.
+ * @param args capture file, optional number of iterations, and optional packet modifier classes
+ * @throws Exception if the capture cannot be loaded or a packet modifier cannot be created
+ */
+public static void main(String[] args) throws Exception {
+	if(args.length == 0) {
+		System.out.println("Usage: PacketReplay <capture file> [iterations] [modifier classes...]");
+		return;
+	}
+	Bootstrap.register();
+	PacketListener.init(LogManager.getLogger("Chungamod packet replay"));
+	int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+	List<PacketModifierCore> modifiers = new ArrayList<>();
+	for(int i = 2; i < args.length; i++) modifiers.add(Class.forName(args[i]).asSubclass(PacketModifierCore.class).newInstance());
+	PacketReplay replay = load(Paths.get(args[0]));
+	System.out.println("Loaded " + replay.getPackets() + " packets, skipped " + replay.getSkipped());
+	if(replay.isTruncated()) System.out.println("Warning: the capture is truncated; replaying its complete records");
+	System.out.println(replay.run(listener -> {
+		for(PacketModifierCore modifier:modifiers) listener.add(modifier);
+	}, iterations));
+}
+
+/**
+ * A recorded packet.
+ * @author Magnileve
+ */
+private static class Record {
+	private final Constructor<? extends Packet<?>> constructor;
+	private final boolean inbound;
+	private final byte[] data;
+	
+	private Record(Constructor<? extends Packet<?>> constructor, boolean inbound, byte[] data) {
+		this.constructor = constructor;
+		this.inbound = inbound;
+		this.data = data;
+	}
+	
+	/**
+	 * Creates a new packet from this record.
+	 * @return the new packet, or {@code null} if it cannot be decoded
+	 */
+	private Packet<?> decode() {
+		try {
+			Packet<?> packet = constructor.newInstance();
+			packet.readPacketData(new PacketBuffer(Unpooled.wrappedBuffer(data)));
+			return packet;
+		} catch(ReflectiveOperationException | IOException | RuntimeException e) {
+			return null;
+		}
+	}
+}
+
+/**
+ * The results of a replay.
+ * @author Magnileve
+ */
+public static class Result {
+	private final long packets;
+	private final int errors;
+	private final long asyncDropped;
+	private final long nanos;
+	private final PacketMetrics metrics;
+	
+	private Result(long packets, int errors, long asyncDropped, long nanos, PacketMetrics metrics) {
+		this.packets = packets;
+		this.errors = errors;
+		this.asyncDropped = asyncDropped;
+		this.nanos = nanos;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return the number of packets replayed
+	 */
+	public long getPackets() {
+		return packets;
+	}
+	
+	/**
+	 * @return the number of packets causing an exception in the pipeline
+	 */
+	public int getErrors() {
+		return errors;
+	}
+	
+	/**
+	 * @return the number of packets not given to asynchronous packet modifiers because their queue was full
+	 */
+	public long getAsyncDropped() {
+		return asyncDropped;
+	}
+	
+	/**
+	 * @return the total time taken to replay packets in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+	
+	/**
+	 * @return the number of packets replayed per second
+	 */
+	public double getPacketsPerSecond() {
+		return nanos == 0 ? 0 : packets * 1_000_000_000D / nanos;
+	}
+	
+	/**
+	 * @return the packet counts and packet modifier statistics recorded during the replay
+	 */
+	public PacketMetrics getMetrics() {
+		return metrics;
+	}
+	
+	@Override
+	public String toString() {
+		return "Replayed " + packets + " packets in " + nanos / 1_000_000 + "ms (" + (long) getPacketsPerSecond() + " packets/s, " +
+				errors + " errors, " + asyncDropped + " packets dropped before asynchronous packet modifiers)" + metrics;
+	}
+}
+
+}
\ No newline at end of file
@@ -2,14 +2,30 @@ package magnileve.chungamod.settings;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.annotation.AnnotationFormatError;
+import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import org.apache.logging.log4j.Logger;
 import org.json.JSONException;
@@ -31,6 +47,29 @@ import magnileve.chungamod.util.json.ValueLimiterSyntaxException;
 
 /**
  * A {@link SettingManager} that loads and saves settings by reading and writing JSON for each config and plugin.
+ * <p>
+ * Saves to {@value SettingManager#TEMPORARY_CONFIG} are written behind:
+ * the JSON of each saved plugin is kept in memory, replacing any previous unwritten JSON of the plugin,
+ * and written by a background thread once no saves have been made for the delay set by the Chungamod property
+ * {@code chungamod.settings.writeDelay}, so a burst of saves is written once.
+ * Reads are served from unwritten JSON, and unwritten JSON is written when the game shuts down.
+ * A write delay of {@code 0} saves the temporary config immediately, like all other configs,
+ * and changing the write delay to {@code 0} writes unwritten JSON immediately.
+ * </p>
+ * <p>
+ * If {@link #isCacheable()} returns {@code true}, the parsed settings of each config and plugin are kept in memory
+ * and reused by {@link #loadConfig(String, Map, TriConsumer)} and {@link #loadSetting(ModuleID, String[])}
+ * until they are invalidated through {@link #invalidate(String, String)} or this setting manager saves to them.
+ * </p>
+ * <p>
+ * If {@link #getModificationStamp(String, String)} is implemented, {@link #loadSettings(Map, String, TriConsumer)}
+ * loads settings of each config other than {@value SettingManager#TEMPORARY_CONFIG} from a binary snapshot of the config
+ * read through {@link #readSnapshot(String)}.  A plugin is loaded from the snapshot only if its JSON has the same modification stamp
+ * and each loaded module declares the same settings as when the snapshot was written; otherwise, its JSON is parsed,
+ * and the snapshot is updated and written through {@link #writeSnapshot(String, ByteBuffer)} by a background thread.
+ * Settings JSON written by this setting manager also replaces the settings of its plugin in a snapshot that has been read.
+ * Snapshots are disabled by setting the Chungamod property {@code chungamod.settings.snapshots} to {@code false}.
+ * </p>
  * @author Magnileve
  */
 @ContainsInit
@@ -38,12 +77,33 @@ public abstract class AbstractSettingManager implements SettingManager {
 
 private static final String INDENT_PROPERTY = "chungamod.indentJSON";
 private static final int DEFAULT_INDENT = 2;
+private static final String WRITE_DELAY_PROPERTY = "chungamod.settings.writeDelay";
+private static final int DEFAULT_WRITE_DELAY = 500;
+private static final String SNAPSHOTS_PROPERTY = "chungamod.settings.snapshots";
+private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(run -> {
+	Thread thread = new Thread(run, "Chungamod settings writer");
+	thread.setDaemon(true);
+	return thread;
+});
 private static volatile int indent;
+/**
+ * Setting managers that have written behind, whose pending writes are rescheduled when the write delay changes.
+ */
+private static final Set<AbstractSettingManager> WRITING_BEHIND = Collections.newSetFromMap(new WeakHashMap<>());
+private static volatile int writeDelay;
+private static volatile boolean snapshots = true;
 
 private final Logger log;
 private final JSONManager json;
 private final Set<String> configs;
 private final SettingMapFactory mapFactory;
+private final Map<String, Map<String, PendingWrite>> pendingWrites;
+private final AtomicReference<ScheduledFuture<?>> scheduledFlush;
+private final AtomicBoolean writingBehind;
+private final Object writeLock;
+private final Map<String, Map<String, ParsedConfig>> parsedConfigs;
+private final AtomicLong invalidations;
+private final Map<String, SettingSnapshot> loadedSnapshots;
 
 @Init
 private static void init() {
@@ -54,6 +114,19 @@ private static void init() {
 			Chung.SYSTEM.setProperty(INDENT_PROPERTY, null);
 		}
 	});
+	Chung.SYSTEM.addProperty(WRITE_DELAY_PROPERTY, String.valueOf(DEFAULT_WRITE_DELAY), value -> {
+		try {
+			int newWriteDelay = Integer.parseInt(value);
+			if(newWriteDelay < 0) throw new IllegalArgumentException();
+			writeDelay = newWriteDelay;
+			synchronized(WRITING_BEHIND) {
+				for(AbstractSettingManager manager:WRITING_BEHIND) if(manager.hasPendingWrites()) manager.scheduleFlush();
+			}
+		} catch(IllegalArgumentException e) {
+			Chung.SYSTEM.setProperty(WRITE_DELAY_PROPERTY, null);
+		}
+	});
+	Chung.SYSTEM.addProperty(SNAPSHOTS_PROPERTY, "true", value -> snapshots = Boolean.parseBoolean(value));
 }
 
 /**
@@ -76,6 +149,13 @@ public AbstractSettingManager(Logger log, JSONManager json, Collection<String> c
 	this.json = json;
 	this.configs = new LinkedHashSet<>(configs);
 	this.mapFactory = mapFactory;
+	pendingWrites = new ConcurrentHashMap<>();
+	scheduledFlush = new AtomicReference<>();
+	writingBehind = new AtomicBoolean();
+	writeLock = new Object();
+	parsedConfigs = new ConcurrentHashMap<>();
+	invalidations = new AtomicLong();
+	loadedSnapshots = new ConcurrentHashMap<>();
 }
 
 /**
@@ -96,6 +176,21 @@ protected abstract Reader getReader(String config, String pluginID) throws IOExc
  */
 protected abstract Writer getWriter(String config, String pluginID) throws IOException;
 
+/**
+ * Writes the settings JSON of a config and plugin.
+ * By default, this method writes to a {@link Writer} opened by {@link #getWriter(String, String)}.
+ * Implementations should override this method if the JSON can be written so that an interrupted write does not corrupt saved settings.
+ * @param config a config
+ * @param pluginID a plugin
+ * @param settingJSON setting JSON
+ * @throws IOException if an I/O error occurs
+ */
+protected void write(String config, String pluginID, String settingJSON) throws IOException {
+	try(Writer write = getWriter(config, pluginID)) {
+		write.write(settingJSON);
+	}
+}
+
 /**
  * Gets a set of all plugins with settings in a config.
  * @param config a config
@@ -103,6 +198,67 @@ protected abstract Writer getWriter(String config, String pluginID) throws IOExc
  */
 protected abstract Set<String> getPluginsInConfig(String config);
 
+/**
+ * Indicates if parsed settings may be kept in memory.
+ * Implementations returning {@code true} must call {@link #invalidate(String, String)}
+ * when settings change without being saved through this setting manager.
+ * By default, this method returns {@code false}.
+ * @return {@code true} if parsed settings may be cached
+ */
+protected boolean isCacheable() {
+	return false;
+}
+
+/**
+ * Discards cached parsed settings of a config and plugin.  This method is thread-safe.
+ * @param config a config, or {@code null} for all configs
+ * @param pluginID a plugin, or {@code null} for all plugins in {@code config}
+ */
+protected void invalidate(String config, String pluginID) {
+	invalidations.incrementAndGet();
+	if(config == null) parsedConfigs.clear();
+	else {
+		Map<String, ParsedConfig> plugins = parsedConfigs.get(config);
+		if(plugins == null) return;
+		if(pluginID == null) plugins.clear();
+		else plugins.remove(pluginID);
+	}
+}
+
+/**
+ * Gets a stamp identifying the current contents of the settings JSON of a config and plugin, such as a hash of the JSON.
+ * The stamp must change whenever the JSON changes, so modification times alone are not suitable
+ * on file systems where a rewrite within one timestamp tick keeps the previous time.
+ * By default, this method returns {@code -1}, and settings are not loaded from snapshots.
+ * @param config a config
+ * @param pluginID a plugin
+ * @return the modification stamp, or {@code -1} if the JSON cannot be stamped
+ * @throws IOException if an I/O error occurs
+ */
+protected long getModificationStamp(String config, String pluginID) throws IOException {
+	return -1L;
+}
+
+/**
+ * Reads the settings snapshot of a config.  Implementations may return a memory-mapped buffer.
+ * By default, this method returns {@code null}.
+ * @param config a config
+ * @return a buffer containing the snapshot, or {@code null} if the config has no snapshot
+ * @throws IOException if an I/O error occurs
+ */
+protected ByteBuffer readSnapshot(String config) throws IOException {
+	return null;
+}
+
+/**
+ * Writes the settings snapshot of a config.  This method is called by a background thread.
+ * By default, this method does nothing.
+ * @param config a config
+ * @param snapshot a buffer containing the snapshot
+ * @throws IOException if an I/O error occurs
+ */
+protected void writeSnapshot(String config, ByteBuffer snapshot) throws IOException {}
+
 /**
  * Removes a plugin from a config, and removes the config if it is empty.
  * @param config a config
@@ -122,11 +278,9 @@ protected abstract ModuleID<?> getModule(String name, String pluginID);
 @Override
 public void save(Map<ModuleID<?>, Map<String, Object>> settingsMap, String config, String pluginID) {
 	log.trace("Saving settings for plugin {} config {}", pluginID, config);
-	if(settingsMap.isEmpty()) try {
-		saveEmpty(config, pluginID);
-	} catch(IOException e) {
-		log.error("Failed to save empty settings", e);
-	} else try(Writer write = getWriter(config, pluginID)) {
+	String settingJSON = null;
+	if(!settingsMap.isEmpty()) {
+		StringWriter write = new StringWriter();
 		JSONWriter w = indent < 0 ? new JSONWriter(write) : new GoodLookingJSONWriter(write, indent);
 		w.object();
 		for(Entry<ModuleID<?>, Map<String, Object>> entry:settingsMap.entrySet()) {
@@ -137,9 +291,203 @@ public void save(Map<ModuleID<?>, Map<String, Object>> settingsMap, String confi
 			}
 		}
 		w.endObject();
+		settingJSON = write.toString();
+	}
+	save(config, pluginID, settingJSON);
+}
+
+/**
+ * Saves the settings JSON of a config and plugin, either immediately or written behind.
+ * @param config a config
+ * @param pluginID a plugin
+ * @param settingJSON setting JSON, or {@code null} to remove the plugin from the config
+ */
+private void save(String config, String pluginID, String settingJSON) {
+	if(isWrittenBehind(config)) writeBehind(config, pluginID, settingJSON);
+	else synchronized(writeLock) {
+		Map<String, PendingWrite> pluginWrites = pendingWrites.get(config);
+		if(pluginWrites != null) pluginWrites.remove(pluginID);
+		writeNow(config, pluginID, settingJSON);
+	}
+}
+
+/**
+ * Indicates if saves to a config are written behind.
+ * @param config a config
+ * @return {@code true} if saves to {@code config} are written by the background thread
+ */
+private boolean isWrittenBehind(String config) {
+	return writeDelay > 0 && TEMPORARY_CONFIG.equals(config);
+}
+
+/**
+ * Queues settings JSON of a config and plugin to be written by the background thread, replacing previously queued JSON.
+ * The write is delayed until no saves have been written behind for the write delay.
+ * @param config a config
+ * @param pluginID a plugin
+ * @param settingJSON setting JSON, or {@code null} to remove the plugin from the config
+ */
+private void writeBehind(String config, String pluginID, String settingJSON) {
+	pendingWrites.computeIfAbsent(config, c -> new ConcurrentHashMap<>()).put(pluginID, new PendingWrite(settingJSON));
+	if(writingBehind.compareAndSet(false, true)) {
+		Chung.SYSTEM.addShutdownHook(this::flush);
+		synchronized(WRITING_BEHIND) {
+			WRITING_BEHIND.add(this);
+		}
+	}
+	scheduleFlush();
+}
+
+/**
+ * Schedules a flush after the current write delay, replacing any flush that has not started yet.
+ */
+private void scheduleFlush() {
+	ScheduledFuture<?> prevFlush = scheduledFlush.getAndSet(WRITER.schedule(this::flush, writeDelay, TimeUnit.MILLISECONDS));
+	if(prevFlush != null) prevFlush.cancel(false);
+}
+
+/**
+ * Indicates if any settings JSON is waiting to be written behind.
+ * @return {@code true} if there are pending writes
+ */
+private boolean hasPendingWrites() {
+	for(Map<String, PendingWrite> pluginWrites:pendingWrites.values()) if(!pluginWrites.isEmpty()) return true;
+	return false;
+}
+
+/**
+ * Writes all settings JSON queued to be written behind.
+ * Each config and plugin is written once with its most recently saved settings.
+ */
+public void flush() {
+	synchronized(writeLock) {
+		for(Entry<String, Map<String, PendingWrite>> config:pendingWrites.entrySet())
+			for(Entry<String, PendingWrite> plugin:config.getValue().entrySet()) {
+				PendingWrite pendingWrite = plugin.getValue();
+				writeNow(config.getKey(), plugin.getKey(), pendingWrite.settingJSON);
+				config.getValue().remove(plugin.getKey(), pendingWrite);
+			}
+	}
+}
+
+/**
+ * Writes or removes the settings of a config and plugin, logging any exception.  The caller must hold {@link #writeLock}.
+ * @param config a config
+ * @param pluginID a plugin
+ * @param settingJSON setting JSON, or {@code null} to remove the plugin from the config
+ */
+private void writeNow(String config, String pluginID, String settingJSON) {
+	if(settingJSON == null) try {
+		saveEmpty(config, pluginID);
+	} catch(IOException e) {
+		log.error("Failed to save empty settings", e);
+	} else try {
+		write(config, pluginID, settingJSON);
 	} catch(IOException e) {
 		log.error("Failed to save settings to file", e);
 	}
+	invalidate(config, pluginID);
+	updateSnapshot(config, pluginID, settingJSON);
+}
+
+/**
+ * Replaces the settings of a plugin in the snapshot of a config with newly written settings JSON,
+ * and writes the snapshot, if the snapshot has been read.
+ * @param config a config
+ * @param pluginID a plugin
+ * @param settingJSON written setting JSON, or {@code null} if the plugin was removed from the config
+ */
+private void updateSnapshot(String config, String pluginID, String settingJSON) {
+	SettingSnapshot snapshot = snapshots ? loadedSnapshots.get(config) : null;
+	if(snapshot == null) return;
+	synchronized(snapshot) {
+		long stamp;
+		try {
+			stamp = getModificationStamp(config, pluginID);
+		} catch(IOException e) {
+			log.error("Error reading file", e);
+			stamp = -1L;
+		}
+		if(stamp == -1L) snapshot.remove(pluginID);
+		else if(settingJSON == null) snapshot.put(pluginID, SettingSnapshot.Plugin.empty(stamp));
+		else {
+			Map<String, SettingInfo> trees = new HashMap<>();
+			Map<String, Map<String, Object>> parsed = new LinkedHashMap<>();
+			Set<String> skippedModules = new HashSet<>();
+			try {
+				parseModules(new JSONTokener(settingJSON), moduleName -> {
+					ModuleID<?> m = getModule(moduleName, pluginID);
+					return m == null ? null : trees.computeIfAbsent(moduleName, k -> SettingInfo.getTree(m));
+				}, parsed, skippedModules);
+				snapshot.put(pluginID, SettingSnapshot.Plugin.of(stamp, trees, parsed, skippedModules, null, json, log));
+			} catch(JSONException e) {
+				log.error("Error parsing saved settings", e);
+				snapshot.remove(pluginID);
+			}
+		}
+		writeSnapshotBehind(config, snapshot);
+	}
+}
+
+/**
+ * Encodes a snapshot if it has changed and writes it on the background thread.  The caller must hold the lock of the snapshot.
+ * @param config a config
+ * @param snapshot the snapshot of the config
+ */
+private void writeSnapshotBehind(String config, SettingSnapshot snapshot) {
+	if(!snapshot.isModified()) return;
+	ByteBuffer buffer = snapshot.write();
+	WRITER.execute(() -> {
+		try {
+			writeSnapshot(config, buffer);
+		} catch(IOException e) {
+			log.error("Failed to write setting snapshot", e);
+		}
+	});
+}
+
+/**
+ * Opens a {@link Reader} for settings of a config and plugin, reading JSON not yet written behind if there is any.
+ * @param config a config
+ * @param pluginID a plugin
+ * @return a new {@code Reader} ready to read setting JSON
+ * @throws IOException if an I/O error occurs
+ */
+private Reader openReader(String config, String pluginID) throws IOException {
+	Map<String, PendingWrite> pluginWrites = pendingWrites.get(config);
+	PendingWrite pendingWrite = pluginWrites == null ? null : pluginWrites.get(pluginID);
+	if(pendingWrite == null) return getReader(config, pluginID);
+	return new StringReader(pendingWrite.settingJSON == null ? "{}" : pendingWrite.settingJSON);
+}
+
+/**
+ * Gets a set of all plugins with settings in a config, including settings not yet written behind.
+ * @param config a config
+ * @return all plugins with settings in the given config
+ */
+private Set<String> getPlugins(String config) {
+	Map<String, PendingWrite> pluginWrites = pendingWrites.get(config);
+	if(pluginWrites == null || pluginWrites.isEmpty()) return getPluginsInConfig(config);
+	Map<String, PendingWrite> pending = new HashMap<>(pluginWrites);
+	Set<String> plugins = new HashSet<>(getPluginsInConfig(config));
+	for(Entry<String, PendingWrite> entry:pending.entrySet()) {
+		if(entry.getValue().settingJSON == null) plugins.remove(entry.getKey());
+		else plugins.add(entry.getKey());
+	}
+	return plugins;
+}
+
+/**
+ * Indicates if a plugin has settings in a config, including settings not yet written behind.
+ * @param config a config
+ * @param pluginID a plugin
+ * @return {@code true} if the plugin has settings in the config
+ */
+private boolean hasPlugin(String config, String pluginID) {
+	Map<String, PendingWrite> pluginWrites = pendingWrites.get(config);
+	PendingWrite pendingWrite = pluginWrites == null ? null : pluginWrites.get(pluginID);
+	if(pendingWrite != null) return pendingWrite.settingJSON != null;
+	return getPluginsInConfig(config).contains(pluginID);
 }
 
 /**
@@ -230,10 +578,19 @@ private void loadDefaultSettings(SettingInfoMap settings, Map<String, Object> ma
 @Override
 public void loadConfig(String config, Map<ModuleID<?>, Map<String, Object>> configSettings,
 		TriConsumer<ModuleID<?>, String[], Object> onNewSetting) {
-	for(String plugin:getPluginsInConfig(config)) {
+	for(String plugin:getPlugins(config)) {
 		Collection<Bucket<ModuleID<?>, Collection<Bucket<String[], Object>>>> changes = onNewSetting == null ?
 				null : new ArrayBuildList<>(Bucket.class);
-		try(Reader read = getReader(config, plugin)) {
+		ParsedConfig parsedConfig = getParsedConfig(config, plugin);
+		if(parsedConfig != null) for(Entry<String, Map<String, Object>> module:parsedConfig.modules.entrySet()) {
+			ModuleID<?> m = getModule(module.getKey(), plugin);
+			if(m == null) continue;
+			Map<String, Object> map = newMap();
+			configSettings.put(m, map);
+			Collection<Bucket<String[], Object>> moduleChanges = changes == null ? null : new ArrayBuildList<>(Bucket.class);
+			copySettings(module.getValue(), new SettingInfoMap(m.getModuleType()), map, new ArrayBuildList<>(new String[1]), moduleChanges);
+			if(changes != null) changes.add(Bucket.of(m, moduleChanges));
+		} else try(Reader read = openReader(config, plugin)) {
 			JSONTokener p = new JSONTokener(read);
 			for(String moduleName:JSONUtil.iterateJSONObject(p)) {
 				ModuleID<?> m = getModule(moduleName, plugin);
@@ -263,13 +620,35 @@ public void loadConfig(String config, Map<ModuleID<?>, Map<String, Object>> conf
 @Override
 public void loadSettings(Map<String, Map<String, Bucket<SettingInfoMap, Map<String, Object>>>> modules,
 		String config, TriConsumer<ModuleID<?>, String[], Object> onNewSetting) {
+	SettingSnapshot snapshot = getSnapshot(config);
+	if(snapshot != null) synchronized(snapshot) {
+		loadSettings(modules, config, onNewSetting, snapshot);
+		writeSnapshotBehind(config, snapshot);
+	} else loadSettings(modules, config, onNewSetting, null);
+}
+
+/**
+ * Loads settings of a config, using a snapshot of the config if one is given.
+ * @param modules map of plugins to map of module names to buckets of setting identifiers and setting maps
+ * @param config a config
+ * @param onNewSetting if not null, accepts all new settings
+ * @param snapshot snapshot of the config, or {@code null}
+ */
+private void loadSettings(Map<String, Map<String, Bucket<SettingInfoMap, Map<String, Object>>>> modules,
+		String config, TriConsumer<ModuleID<?>, String[], Object> onNewSetting, SettingSnapshot snapshot) {
 	for(Entry<String, Map<String, Bucket<SettingInfoMap, Map<String, Object>>>> plugin:modules.entrySet()) {
 		String pluginID = plugin.getKey();
 		Collection<Bucket<ModuleID<?>, Collection<Bucket<String[], Object>>>> changes = onNewSetting == null ?
 				null : new ArrayBuildList<>(Bucket.class);
-		try(Reader read = getReader(config, pluginID)) {
+		Map<String, Bucket<SettingInfoMap, Map<String, Object>>> map = plugin.getValue();
+		Map<String, Map<String, Object>> loaded = snapshot == null ? null : loadSnapshot(snapshot, config, pluginID, map);
+		if(loaded != null) for(Entry<String, Map<String, Object>> module:loaded.entrySet()) {
+			Bucket<SettingInfoMap, Map<String, Object>> bucket = map.get(module.getKey());
+			Collection<Bucket<String[], Object>> moduleChanges = changes == null ? null : new ArrayBuildList<>(Bucket.class);
+			copySettings(module.getValue(), bucket.getE1(), bucket.getE2(), new ArrayBuildList<>(new String[1]), moduleChanges);
+			if(changes != null) changes.add(Bucket.of(getModule(module.getKey(), pluginID), moduleChanges));
+		} else try(Reader read = openReader(config, pluginID)) {
 			JSONTokener p = new JSONTokener(read);
-			Map<String, Bucket<SettingInfoMap, Map<String, Object>>> map = plugin.getValue();
 			for(String moduleName:JSONUtil.iterateJSONObject(p)) {
 				Bucket<SettingInfoMap, Map<String, Object>> bucket = map.get(moduleName);
 				if(bucket == null) p.nextValue();
@@ -289,6 +668,77 @@ public void loadSettings(Map<String, Map<String, Bucket<SettingInfoMap, Map<Stri
 	}
 }
 
+/**
+ * Gets the snapshot of a config, reading it if it has not been read.
+ * A snapshot that cannot be decoded is treated as stale and replaced with an empty snapshot, so settings are parsed from JSON.
+ * @param config a config
+ * @return the snapshot of the config, or {@code null} if snapshots are not used for the config
+ */
+private SettingSnapshot getSnapshot(String config) {
+	if(!snapshots || TEMPORARY_CONFIG.equals(config)) return null;
+	return loadedSnapshots.computeIfAbsent(config, c -> {
+		try {
+			ByteBuffer buffer = readSnapshot(c);
+			if(buffer != null) return SettingSnapshot.read(buffer);
+		} catch(IOException | RuntimeException e) {
+			log.error("Error reading setting snapshot", e);
+		}
+		return new SettingSnapshot();
+	});
+}
+
+/**
+ * Loads parsed settings of modules in a config and plugin from a snapshot.
+ * If the snapshot is stale, the JSON is parsed, and the snapshot is updated.
+ * @param snapshot snapshot of the config
+ * @param config a config
+ * @param pluginID a plugin
+ * @param modules map of module names to buckets of setting identifiers and setting maps
+ * @return parsed settings of each module with settings in the config, or {@code null} if the snapshot cannot be used
+ */
+private Map<String, Map<String, Object>> loadSnapshot(SettingSnapshot snapshot, String config, String pluginID,
+		Map<String, Bucket<SettingInfoMap, Map<String, Object>>> modules) {
+	Map<String, PendingWrite> pluginWrites = pendingWrites.get(config);
+	if(pluginWrites != null && pluginWrites.containsKey(pluginID)) return null;
+	long stamp;
+	try {
+		stamp = getModificationStamp(config, pluginID);
+	} catch(IOException e) {
+		log.error("Error reading file", e);
+		return null;
+	}
+	if(stamp == -1L) return null;
+	Map<String, SettingInfo> trees = new HashMap<>(modules.size());
+	for(Entry<String, Bucket<SettingInfoMap, Map<String, Object>>> module:modules.entrySet())
+		trees.put(module.getKey(), module.getValue().getE1().getNode());
+	SettingSnapshot.Plugin plugin = snapshot.get(pluginID);
+	if(plugin != null && plugin.getStamp() == stamp) try {
+		Map<String, Map<String, Object>> loaded = plugin.load(trees, mapFactory, json);
+		if(loaded != null) {
+			Set<String> unencodedModules = plugin.getUnencodedModules();
+			if(!Collections.disjoint(unencodedModules, trees.keySet())) try(Reader read = getReader(config, pluginID)) {
+				parseModules(new JSONTokener(read), moduleName -> unencodedModules.contains(moduleName) ? trees.get(moduleName) : null,
+						loaded, new HashSet<>());
+			} catch(IOException | JSONException e) {
+				log.error("Error reading file", e);
+			}
+			return loaded;
+		}
+	} catch(IOException | RuntimeException e) {
+		log.error("Error reading setting snapshot", e);
+	}
+	Map<String, Map<String, Object>> parsed = new LinkedHashMap<>();
+	Set<String> skippedModules = new HashSet<>();
+	try(Reader read = getReader(config, pluginID)) {
+		parseModules(new JSONTokener(read), trees::get, parsed, skippedModules);
+	} catch(IOException | JSONException e) {
+		log.error("Error reading file", e);
+		return parsed;
+	}
+	snapshot.put(pluginID, SettingSnapshot.Plugin.of(stamp, trees, parsed, skippedModules, plugin, json, log));
+	return parsed;
+}
+
 @Override
 public Object loadSetting(ModuleID<?> m, String[] settingPath) {
 	String name = m.getName();
@@ -315,8 +765,12 @@ public Object loadSetting(ModuleID<?> m, String[] settingPath) {
  * @param map map to load setting into
  */
 private void loadSetting(String config, String pluginID, String moduleName, SettingInfoMap settings, Map<String, Object> map) {
-	if(getPluginsInConfig(config).contains(pluginID)) {
-		try(Reader read = getReader(config, pluginID)) {
+	if(hasPlugin(config, pluginID)) {
+		ParsedConfig parsedConfig = getParsedConfig(config, pluginID);
+		if(parsedConfig != null) {
+			Map<String, Object> module = parsedConfig.modules.get(moduleName);
+			if(module != null) copySettings(module, settings, map, new ArrayBuildList<>(new String[1]), null);
+		} else try(Reader read = openReader(config, pluginID)) {
 			JSONTokener p = new JSONTokener(read);
 			for(String checkName:JSONUtil.iterateJSONObject(p)) if(moduleName.equals(checkName))
 				parseSettingJSON(p, settings, map, new ArrayBuildList<>(new String[1]), null);
@@ -327,6 +781,113 @@ private void loadSetting(String config, String pluginID, String moduleName, Sett
 	}
 }
 
+/**
+ * Gets the cached parsed settings of a config and plugin, parsing them if they are not cached.
+ * If settings JSON of the plugin is waiting to be written behind, the parsed form of that JSON is cached with it instead.
+ * @param config a config
+ * @param pluginID a plugin
+ * @return the parsed settings, or {@code null} if they cannot be cached
+ */
+private ParsedConfig getParsedConfig(String config, String pluginID) {
+	if(!isCacheable()) return null;
+	Map<String, PendingWrite> pluginWrites = pendingWrites.get(config);
+	PendingWrite pendingWrite = pluginWrites == null ? null : pluginWrites.get(pluginID);
+	if(pendingWrite != null) {
+		ParsedConfig parsedConfig = pendingWrite.parsedConfig;
+		if(parsedConfig == null || !parsedConfig.isCurrent(pluginID))
+			pendingWrite.parsedConfig = parsedConfig = parseConfig(config, pluginID, pendingWrite);
+		return parsedConfig;
+	}
+	Map<String, ParsedConfig> plugins = parsedConfigs.computeIfAbsent(config, c -> new ConcurrentHashMap<>());
+	ParsedConfig parsedConfig = plugins.get(pluginID);
+	if(parsedConfig != null && parsedConfig.isCurrent(pluginID)) return parsedConfig;
+	long stamp = invalidations.get();
+	parsedConfig = parseConfig(config, pluginID, null);
+	if(parsedConfig != null && invalidations.get() == stamp) plugins.put(pluginID, parsedConfig);
+	return parsedConfig;
+}
+
+/**
+ * Parses all settings of a config and plugin.
+ * @param config a config
+ * @param pluginID a plugin
+ * @param pendingWrite settings JSON waiting to be written behind to parse instead of the written settings, or {@code null}
+ * @return the parsed settings, or {@code null} if an error occurs
+ */
+private ParsedConfig parseConfig(String config, String pluginID, PendingWrite pendingWrite) {
+	Map<String, Map<String, Object>> modules = new LinkedHashMap<>();
+	Set<String> missingModules = new HashSet<>(0);
+	try(Reader read = pendingWrite == null ? getReader(config, pluginID) :
+			new StringReader(pendingWrite.settingJSON == null ? "{}" : pendingWrite.settingJSON)) {
+		parseModules(new JSONTokener(read), moduleName -> {
+			ModuleID<?> m = getModule(moduleName, pluginID);
+			return m == null ? null : SettingInfo.getTree(m);
+		}, modules, missingModules);
+	} catch(IOException | JSONException e) {
+		log.error("Error reading file", e);
+		return null;
+	}
+	for(String moduleName:missingModules) log.info("Settings in config {} for missing module {} in plugin {} will not be saved",
+			config, moduleName, pluginID);
+	return new ParsedConfig(modules, missingModules);
+}
+
+/**
+ * Parses all settings of modules in the JSON of a config and plugin.
+ * @param p reads JSON
+ * @param getTree gets the settings declared by a module from its name, or {@code null} if its settings should not be parsed
+ * @param modules map to put the parsed settings of each module into
+ * @param skippedModules collects names of modules that are not parsed
+ * @throws JSONException if a JSON parsing error occurs
+ */
+private void parseModules(JSONTokener p, Function<String, SettingInfo> getTree, Map<String, Map<String, Object>> modules,
+		Set<String> skippedModules) throws JSONException {
+	for(String moduleName:JSONUtil.iterateJSONObject(p)) {
+		SettingInfo tree = getTree.apply(moduleName);
+		if(tree == null) {
+			skippedModules.add(moduleName);
+			p.nextValue();
+			continue;
+		}
+		Map<String, Object> map = newMap();
+		parseSettingJSON(p, new SettingInfoMap(tree), map, new ArrayBuildList<>(new String[1]), null);
+		modules.put(moduleName, map);
+	}
+}
+
+/**
+ * Copies parsed settings recursively, in the same way as {@link #parseSettingJSON(JSONTokener, SettingInfoMap, Map, ArrayBuildList, Collection)}.
+ * @param source parsed settings
+ * @param settings setting identifiers
+ * @param map map to copy settings into
+ * @param settingPathBuilder contains the current setting path
+ * @param changes if not null, collects changes in the setting map
+ */
+@SuppressWarnings("unchecked")
+private void copySettings(Map<String, Object> source, SettingInfoMap settings, Map<String, Object> map,
+		ArrayBuildList<String> settingPathBuilder, Collection<Bucket<String[], Object>> changes) {
+	int pathSize = settingPathBuilder.size();
+	settingPathBuilder.add(null);
+	String[] settingPath = settingPathBuilder.getArray();
+	for(Entry<String, Object> entry:source.entrySet()) {
+		String name = entry.getKey();
+		SettingInfoMap settingEntry = settings.get(name);
+		if(settingEntry == null) continue;
+		settingPath[pathSize] = name;
+		if(settingEntry.getNode().isTree()) {
+			copySettings((Map<String, Object>) entry.getValue(), settingEntry, SettingUtil.getSubMap(map, name, this),
+					settingPathBuilder, changes);
+			if(settingEntry.getNodeMap().isEmpty()) settings.remove(name);
+		} else {
+			Object value = Util.recursiveArrayClone(entry.getValue());
+			Object oldValue = map.put(name, value);
+			settings.remove(name);
+			if(!(changes == null || Util.equals(value, oldValue))) changes.add(Bucket.of(settingPath.clone(), value));
+		}
+	}
+	settingPathBuilder.remove(pathSize);
+}
+
 /**
  * Reads settings from JSON recursively.
  * @param p reads JSON
@@ -376,11 +937,7 @@ private void parseSettingJSON(JSONTokener p, SettingInfoMap settings, Map<String
 
 @Override
 public void clearTemporaryConfig() {
-	for(String pluginID:getPluginsInConfig(TEMPORARY_CONFIG)) try {
-		saveEmpty(TEMPORARY_CONFIG, pluginID);
-	} catch (IOException e) {
-		log.error("Failed to save empty settings", e);
-	}
+	for(String pluginID:getPlugins(TEMPORARY_CONFIG)) save(TEMPORARY_CONFIG, pluginID, null);
 }
 
 @Override
@@ -393,4 +950,41 @@ public Map<String, Object> newMap() {
 	return mapFactory.newMap();
 }
 
+/**
+ * Settings JSON of a config and plugin waiting to be written, and its parsed form once it has been read.
+ * @author Magnileve
+ */
+private static class PendingWrite {
+	private final String settingJSON;
+	private volatile ParsedConfig parsedConfig;
+	
+	private PendingWrite(String settingJSON) {
+		this.settingJSON = settingJSON;
+	}
+}
+
+/**
+ * Parsed settings of a config and plugin.
+ * @author Magnileve
+ */
+private class ParsedConfig {
+	private final Map<String, Map<String, Object>> modules;
+	private final Set<String> missingModules;
+	
+	private ParsedConfig(Map<String, Map<String, Object>> modules, Set<String> missingModules) {
+		this.modules = modules;
+		this.missingModules = missingModules;
+	}
+	
+	/**
+	 * Indicates if modules missing when these settings were parsed are still missing.
+	 * @param pluginID plugin of these settings
+	 * @return {@code true} if these settings do not need to be parsed again
+	 */
+	private boolean isCurrent(String pluginID) {
+		for(String moduleName:missingModules) if(getModule(moduleName, pluginID) != null) return false;
+		return true;
+	}
+}
+
 }
\ No newline at end of file
@@ -49,11 +49,11 @@ public void set(ModuleID<?> m, Object value, String... settingPath) {
 
 @Override
 public Object get(ModuleID<?> m, String... settingPath) {
-	return SettingUtil.getValue(settings, m, settingPath, SettingInfo.getTree(m));
+	return SettingUtil.getValue(settings, m, settingPath, SettingInfo.getSharedTree(m));
 }
 
 public Object remove(ModuleID<?> m, String... settingPath) {
-	return SettingUtil.removeValue(settings, m, settingPath, SettingInfo.getTree(m));
+	return SettingUtil.removeValue(settings, m, settingPath, SettingInfo.getSharedTree(m));
 }
 
 @Override
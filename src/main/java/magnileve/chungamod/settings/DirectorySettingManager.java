@@ -4,15 +4,30 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 import org.apache.logging.log4j.Logger;
 
@@ -23,12 +38,28 @@ import magnileve.chungamod.util.json.JSONManager;
  * A {@code SettingManager} that stores settings in JSON files.
  * The root directory of this setting manager contains directories of each config,
  * and each directory of a config contains JSON files named with plugin IDs.
+ * Settings are written to a temporary file which then replaces the JSON file,
+ * so the JSON file is never left partially written.
+ * Parsed settings and the plugins of each config are cached, and a {@link WatchService} on the root directory
+ * and each config directory discards cached values when files are changed outside of this setting manager.
+ * The settings snapshot of each config is stored in the root directory as {@code <config>.snapshot},
+ * stamped with the length and CRC-32 of each JSON file, and memory-mapped when read.
  * @author Magnileve
  */
 public class DirectorySettingManager extends AbstractSettingManager {
 
+private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+private final Logger log;
 private final Path directory;
 private final BiFunction<String, String, ModuleID<?>> getModule;
+private final Map<String, Set<String>> pluginsInConfigs;
+private final Map<WatchKey, String> watchedConfigs;
+private final AtomicLong pluginChanges;
+
+private volatile WatchService watcher;
+private WatchKey rootKey;
+private boolean watchFailed;
 
 /**
  * Creates a new {@code DirectorySettingManager}.
@@ -42,8 +73,100 @@ private final BiFunction<String, String, ModuleID<?>> getModule;
 public DirectorySettingManager(Logger log, JSONManager json, Collection<String> configs, SettingMapFactory mapFactory,
 		Path directory, BiFunction<String, String, ModuleID<?>> getModule) {
 	super(log, json, configs, mapFactory);
+	this.log = log;
 	this.directory = directory;
 	this.getModule = getModule;
+	pluginsInConfigs = new ConcurrentHashMap<>();
+	watchedConfigs = new ConcurrentHashMap<>();
+	pluginChanges = new AtomicLong();
+}
+
+/**
+ * Starts watching the directory of configs if it is not being watched.
+ * @return {@code true} if the directory of configs is being watched
+ */
+private synchronized boolean watch() {
+	if(watcher != null) return true;
+	if(watchFailed) return false;
+	try {
+		Files.createDirectories(directory);
+		watcher = directory.getFileSystem().newWatchService();
+		rootKey = directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+		try(Stream<Path> paths = Files.list(directory)) {
+			paths.filter(path -> Files.isDirectory(path)).forEach(this::watchConfig);
+		}
+	} catch(IOException | UnsupportedOperationException e) {
+		log.error("Unable to watch configs; settings will not be cached", e);
+		if(watcher != null) try {
+			watcher.close();
+		} catch(IOException e1) {}
+		watcher = null;
+		watchFailed = true;
+		return false;
+	}
+	Thread thread = new Thread(this::processWatchEvents, "Chungamod config watcher");
+	thread.setDaemon(true);
+	thread.start();
+	return true;
+}
+
+/**
+ * Starts watching the directory of a config.
+ * @param dir directory of the config
+ */
+private void watchConfig(Path dir) {
+	try {
+		watchedConfigs.put(dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+				StandardWatchEventKinds.ENTRY_MODIFY), dir.getFileName().toString());
+	} catch(IOException e) {
+		log.error("Unable to watch config " + dir, e);
+	}
+	invalidateConfig(dir.getFileName().toString());
+}
+
+/**
+ * Discards cached values for changed files until the watch service is closed.
+ */
+private void processWatchEvents() {
+	try {
+		for(;;) {
+			WatchKey key = watcher.take();
+			String config = watchedConfigs.get(key);
+			for(WatchEvent<?> event:key.pollEvents()) {
+				if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					invalidateConfig(null);
+					continue;
+				}
+				String name = ((Path) event.context()).getFileName().toString();
+				if(key == rootKey) {
+					Path dir = directory.resolve(name);
+					if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(dir)) watchConfig(dir);
+					else if(!name.contains(SNAPSHOT_EXTENSION)) invalidateConfig(name);
+				} else if(config != null && name.endsWith(".json")) {
+					pluginChanges.incrementAndGet();
+					pluginsInConfigs.remove(config);
+					invalidate(config, name.substring(0, name.length() - 5));
+				}
+			}
+			if(!key.reset()) watchedConfigs.remove(key);
+		}
+	} catch(InterruptedException | ClosedWatchServiceException e) {}
+}
+
+/**
+ * Discards cached values of a config.
+ * @param config a config, or {@code null} for all configs
+ */
+private void invalidateConfig(String config) {
+	pluginChanges.incrementAndGet();
+	if(config == null) pluginsInConfigs.clear();
+	else pluginsInConfigs.remove(config);
+	invalidate(config, null);
+}
+
+@Override
+protected boolean isCacheable() {
+	return watcher != null || watch();
 }
 
 @Override
@@ -64,26 +187,101 @@ protected Writer getWriter(String config, String pluginID) throws IOException {
 }
 
 @Override
-protected Set<String> getPluginsInConfig(String config) {
-	Stream<Path> paths;
+protected void write(String config, String pluginID, String settingJSON) throws IOException {
+	Path dir = directory.resolve(config);
+	if(!Files.isDirectory(dir)) Files.createDirectories(dir);
+	Path file = dir.resolve(pluginID + ".json");
+	Path tempFile = dir.resolve(pluginID + ".json.tmp");
+	Files.write(tempFile, settingJSON.getBytes(StandardCharsets.UTF_8));
 	try {
-		paths = Files.list(directory.resolve(config));
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	} catch(AtomicMoveNotSupportedException e) {
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+	} finally {
+		pluginChanges.incrementAndGet();
+		pluginsInConfigs.remove(config);
+	}
+}
+
+@Override
+protected Set<String> getPluginsInConfig(String config) {
+	boolean cacheable = isCacheable();
+	if(cacheable) {
+		Set<String> plugins = pluginsInConfigs.get(config);
+		if(plugins != null) return plugins;
+	}
+	long stamp = pluginChanges.get();
+	Set<String> plugins;
+	try(Stream<Path> paths = Files.list(directory.resolve(config))) {
+		plugins = paths.filter(path -> Files.isRegularFile(path))
+				.map(path -> path.getFileName().toString())
+				.filter(name -> name.endsWith(".json"))
+				.map(name -> name.substring(0, name.length() - 5))
+				.collect(Collectors.toSet());
 	} catch(IOException e) {
-		paths = Collections.<Path>emptyList().stream();
+		plugins = Collections.emptySet();
 	}
-	return paths.filter(path -> Files.isRegularFile(path))
-			.map(path -> path.getFileName().toString())
-			.filter(name -> name.endsWith(".json"))
-			.map(name -> name.substring(0, name.length() - 5))
-			.collect(Collectors.toSet());
+	plugins = Collections.unmodifiableSet(plugins);
+	if(cacheable && pluginChanges.get() == stamp) pluginsInConfigs.put(config, plugins);
+	return plugins;
 }
 
 @Override
 protected void saveEmpty(String config, String pluginID) throws IOException {
 	Path dir = directory.resolve(config);
 	Path file = dir.resolve(pluginID + ".json");
-	Files.deleteIfExists(file);
-	if(!Files.list(dir).findAny().isPresent()) Files.delete(dir);
+	try {
+		Files.deleteIfExists(file);
+		if(!Files.isDirectory(dir)) return;
+		try(Stream<Path> paths = Files.list(dir)) {
+			if(paths.findAny().isPresent()) return;
+		}
+		Files.delete(dir);
+	} finally {
+		pluginChanges.incrementAndGet();
+		pluginsInConfigs.remove(config);
+	}
+}
+
+@Override
+protected long getModificationStamp(String config, String pluginID) throws IOException {
+	Path path = directory.resolve(Paths.get(config, pluginID + ".json"));
+	if(!Files.exists(path)) return 0L;
+	byte[] bytes = Files.readAllBytes(path);
+	CRC32 crc = new CRC32();
+	crc.update(bytes, 0, bytes.length);
+	return (bytes.length + 1L) << 32 | crc.getValue();
+}
+
+@Override
+protected ByteBuffer readSnapshot(String config) throws IOException {
+	Path file = directory.resolve(config + SNAPSHOT_EXTENSION);
+	Path newFile = directory.resolve(config + SNAPSHOT_EXTENSION + ".new");
+	if(Files.exists(newFile)) Files.move(newFile, file, StandardCopyOption.REPLACE_EXISTING);
+	if(!Files.isRegularFile(file)) return null;
+	try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+		return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+	}
+}
+
+/**
+ * {@inheritDoc}
+ * If the snapshot cannot be replaced because it is mapped, the new snapshot replaces it when it is next read.
+ */
+@Override
+protected void writeSnapshot(String config, ByteBuffer snapshot) throws IOException {
+	Files.createDirectories(directory);
+	Path file = directory.resolve(config + SNAPSHOT_EXTENSION);
+	Path tempFile = directory.resolve(config + SNAPSHOT_EXTENSION + ".tmp");
+	try(FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.TRUNCATE_EXISTING)) {
+		while(snapshot.hasRemaining()) channel.write(snapshot);
+	}
+	try {
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+	} catch(IOException e) {
+		Files.move(tempFile, directory.resolve(config + SNAPSHOT_EXTENSION + ".new"), StandardCopyOption.REPLACE_EXISTING);
+	}
 }
 
 @Override
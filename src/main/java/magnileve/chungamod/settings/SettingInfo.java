@@ -8,6 +8,7 @@ import magnileve.chungamod.modules.ModuleID;
 
 /**
  * Identifies a setting.
+ * Subsetting nodes are found by name, ignoring case, through a hash index built when the subsettings of a branch are loaded.
  * @author Magnileve
  */
 public abstract class SettingInfo implements Iterable<SettingInfo> {
@@ -24,6 +25,16 @@ private static final SettingInfo SETTING_ON = new Value(new Setting() {
 	@Override public String description() {return "";}
 });
 
+/**
+ * Caches a shared thread-safe tree of each declaring type.
+ */
+private static final ClassValue<SettingInfo> SHARED_TREES = new ClassValue<SettingInfo>() {
+	@Override
+	protected SettingInfo computeValue(Class<?> type) {
+		return getTree(type, true);
+	}
+};
+
 private SettingInfo() {}
 
 /**
@@ -70,6 +81,21 @@ public SettingInfo getNode(String[] settingPath) {
 	return getNode(settingPath, 0, settingPath.length);
 }
 
+/**
+ * Gets the nodes along the start of a setting path relative to the current node's setting path,
+ * so callers needing more than the last node resolve the path once.
+ * @param settingPath a setting path with the current node acting as the root
+ * @param end ending index of {@code settingPath}, excluded
+ * @return an array containing this node followed by the node at each index of {@code settingPath} before {@code end}
+ * @throws InvalidSettingPathException if the given setting path does not point to a node
+ */
+public SettingInfo[] getNodes(String[] settingPath, int end) {
+	SettingInfo[] nodes = new SettingInfo[end + 1];
+	nodes[0] = this;
+	resolvePath(settingPath, 0, end, nodes);
+	return nodes;
+}
+
 /**
  * Gets the node representing a part of the setting path relative to the current node's setting path.
  * @param settingPath a setting path with the current node acting as the path before {@code start}
@@ -79,14 +105,28 @@ public SettingInfo getNode(String[] settingPath) {
  * @throws InvalidSettingPathException if the given setting path does not point to a node
  */
 public SettingInfo getNode(String[] settingPath, int start, int end) {
+	return resolvePath(settingPath, start, end, null);
+}
+
+/**
+ * Follows part of a setting path from the current node.
+ * @param settingPath a setting path with the current node acting as the path before {@code start}
+ * @param start starting index of {@code settingPath}, included
+ * @param end ending index of {@code settingPath}, excluded
+ * @param nodes if not {@code null}, receives the node at each index of {@code settingPath}, starting at index {@code 1}
+ * @return a node for part the given setting path
+ * @throws InvalidSettingPathException if the given setting path does not point to a node
+ */
+private SettingInfo resolvePath(String[] settingPath, int start, int end, SettingInfo[] nodes) {
 	SettingInfo node = this;
-	for(;start < end; start++) {
+	for(int i = start; i < end; i++) {
 		try {
-			node = node.getNode(settingPath[start]);
+			node = node.getNode(settingPath[i]);
 		} catch(IllegalStateException e) {
 			node = null;
 		}
 		if(node == null) throw new InvalidSettingPathException(settingPath);
+		if(nodes != null) nodes[i - start + 1] = node;
 	}
 	return node;
 }
@@ -126,6 +166,16 @@ public static SettingInfo getTree(Class<?> moduleClass) {
 	return getTree(moduleClass, false);
 }
 
+/**
+ * Gets a shared thread-safe {@code SettingInfo} tree representing the settings declared by the given module.
+ * Since the shared tree and the indexes of its branches are only built once, it should be used for repeated lookups of settings.
+ * @param m a module
+ * @return a {@code SettingInfo} representing the root setting path of the module
+ */
+public static SettingInfo getSharedTree(ModuleID<?> m) {
+	return SHARED_TREES.get(m.getModuleType());
+}
+
 /**
  * Creates the root of a {@code SettingInfo} tree representing the settings declared by the given type.
  * Subsetting branches are lazily loaded.
@@ -213,7 +263,11 @@ private static abstract class Tree extends SettingInfo {
 	
 	protected abstract SettingInfo newNode(String name, Setting[] settingsA, Annotation[] subSettingsA);
 	
-	protected abstract SettingInfo[] getSubSettings();
+	protected abstract NodeIndex getIndex();
+	
+	protected SettingInfo[] getSubSettings() {
+		return getIndex().nodes;
+	}
 	
 	private Tree(String name, Setting[] settingsA, Annotation[] subSettingsA) {
 		this.settingsA = settingsA;
@@ -223,8 +277,7 @@ private static abstract class Tree extends SettingInfo {
 	
 	@Override
 	public SettingInfo getNode(String name) {
-		for(SettingInfo node:getSubSettings()) if(node.getName().equalsIgnoreCase(name)) return node;
-		return null;
+		return getIndex().get(name);
 	}
 	
 	@Override
@@ -285,21 +338,21 @@ private static abstract class Tree extends SettingInfo {
 }
 
 private static class Root extends Tree {
-	private final SettingInfo[] subSettings;
+	private final NodeIndex index;
 	
 	private Root(SettingInfo[] subSettings, String name) {
 		super(name, null, null);
-		this.subSettings = subSettings;
+		index = new NodeIndex(subSettings);
 	}
 	
 	@Override
-	protected SettingInfo[] getSubSettings() {
-		return subSettings;
+	protected NodeIndex getIndex() {
+		return index;
 	}
 	
 	@Override
 	public int getNodeCount() {
-		return subSettings.length;
+		return index.nodes.length;
 	}
 	
 	@Override
@@ -309,16 +362,16 @@ private static class Root extends Tree {
 }
 
 private static class ThreadUnsafe extends Tree {
-	private SettingInfo[] subSettings;
+	private NodeIndex index;
 	
 	private ThreadUnsafe(String name, Setting[] settingsA, Annotation[] subSettingsA) {
 		super(name, settingsA, subSettingsA);
 	}
 	
 	@Override
-	protected SettingInfo[] getSubSettings() {
-		if(subSettings == null) subSettings = getSubSettingNodes();
-		return subSettings;
+	protected NodeIndex getIndex() {
+		if(index == null) index = new NodeIndex(getSubSettingNodes());
+		return index;
 	}
 	
 	@Override
@@ -328,18 +381,18 @@ private static class ThreadUnsafe extends Tree {
 }
 
 private static class ThreadSafe extends Tree {
-	private volatile SettingInfo[] subSettings;
+	private volatile NodeIndex index;
 
 	private ThreadSafe(String name, Setting[] settingsA, Annotation[] subSettingsA) {
 		super(name, settingsA, subSettingsA);
 	}
 	
 	@Override
-	protected SettingInfo[] getSubSettings() {
-		if(subSettings == null) synchronized(this) {
-			if(subSettings == null) subSettings = getSubSettingNodes();
+	protected NodeIndex getIndex() {
+		if(index == null) synchronized(this) {
+			if(index == null) index = new NodeIndex(getSubSettingNodes());
 		}
-		return subSettings;
+		return index;
 	}
 	
 	@Override
@@ -348,6 +401,69 @@ private static class ThreadSafe extends Tree {
 	}
 }
 
+/**
+ * Folds a character in the same way as {@link String#equalsIgnoreCase(String)}.
+ * @param c a character
+ * @return the case-folded character
+ */
+private static char fold(char c) {
+	return Character.toLowerCase(Character.toUpperCase(c));
+}
+
+/**
+ * Computes a hash of a string that is equal for strings equal ignoring case.
+ * @param str a string
+ * @return the case-folded hash
+ */
+private static int foldedHash(String str) {
+	int hash = 0;
+	for(int i = 0; i < str.length(); i++) hash = 31 * hash + fold(str.charAt(i));
+	return hash;
+}
+
+/**
+ * The subsetting nodes of a branch, indexed by case-folded name in an open-addressing hash table.
+ * If names of nodes are equal ignoring case, the first node is found.
+ * @author Magnileve
+ */
+private static class NodeIndex {
+	private final SettingInfo[] nodes;
+	private final SettingInfo[] table;
+	private final int[] hashes;
+	private final int mask;
+	
+	private NodeIndex(SettingInfo[] nodes) {
+		this.nodes = nodes;
+		int size = Integer.highestOneBit(Math.max(nodes.length, 1) * 2 - 1) << 1;
+		table = new SettingInfo[size];
+		hashes = new int[size];
+		mask = size - 1;
+		for(SettingInfo node:nodes) {
+			String name = node.getName();
+			int hash = foldedHash(name);
+			int i = spread(hash) & mask;
+			while(table[i] != null && !(hashes[i] == hash && table[i].getName().equalsIgnoreCase(name))) i = (i + 1) & mask;
+			if(table[i] == null) {
+				table[i] = node;
+				hashes[i] = hash;
+			}
+		}
+	}
+	
+	private SettingInfo get(String name) {
+		int hash = foldedHash(name);
+		for(int i = spread(hash) & mask;; i = (i + 1) & mask) {
+			SettingInfo node = table[i];
+			if(node == null) return null;
+			if(hashes[i] == hash && node.getName().equalsIgnoreCase(name)) return node;
+		}
+	}
+	
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
+
 private static class SubSetting {
 	private final int index;
 	private final String name;
@@ -1,6 +1,9 @@
 package magnileve.chungamod.settings;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -104,6 +107,20 @@ public default void loadSettings(Iterable<Bucket<ModuleID<?>, Bucket<SettingInfo
 	loadSettings(modules, null);
 }
 
+/**
+ * Loads all settings for the given modules, and collects the settings that change.
+ * This method calls {@link #loadSettings(Iterable, TriConsumer)} with a listener collecting each changed setting,
+ * so configs are loaded in the same order with one pass per config.
+ * @param modules contains modules, their setting information, and their current setting maps to be loaded into
+ * @return maps each module with changed settings to the paths and new values of its changed settings, in order of resolution
+ */
+public default Map<ModuleID<?>, List<Bucket<String[], Object>>> resolveChanges(
+		Iterable<Bucket<ModuleID<?>, Bucket<SettingInfoMap, Map<String, Object>>>> modules) {
+	Map<ModuleID<?>, List<Bucket<String[], Object>>> changes = new LinkedHashMap<>();
+	loadSettings(modules, (m, settingPath, value) -> changes.computeIfAbsent(m, k -> new ArrayList<>()).add(Bucket.of(settingPath, value)));
+	return changes;
+}
+
 /**
  * @throws InvalidSettingPathException {@inheritDoc}
  */
@@ -126,7 +143,7 @@ public default Object get(String config, ModuleID<?> m, String... settingPath) {
 	loadConfig(config, settings);
 	Map<String, Object> root = settings.get(m);
 	if(root == null) throw new InvalidSettingPathException(settingPath);
-	return SettingUtil.getValue(settings, m, settingPath, SettingInfo.getTree(m));
+	return SettingUtil.getValue(settings, m, settingPath, SettingInfo.getSharedTree(m));
 }
 
 /**
@@ -139,7 +156,7 @@ public default Object remove(String config, ModuleID<?> m, String... settingPath
 	loadConfig(config, settings);
 	Map<String, Object> root = settings.get(m);
 	if(root == null) throw new InvalidSettingPathException(settingPath);
-	Object oldValue = SettingUtil.removeValue(settings, m, settingPath, SettingInfo.getTree(m));
+	Object oldValue = SettingUtil.removeValue(settings, m, settingPath, SettingInfo.getSharedTree(m));
 	save(settings, config, m.getPluginID());
 	return oldValue;
 }
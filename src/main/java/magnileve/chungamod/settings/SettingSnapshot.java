@@ -0,0 +1,451 @@
+package magnileve.chungamod.settings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONTokener;
+import org.json.JSONWriter;
+
+import magnileve.chungamod.util.json.JSONManager;
+
+/**
+ * A binary copy of the parsed settings of each plugin in a config, used to load settings without parsing JSON.
+ * Each plugin is stored with a modification stamp of its JSON, and each module is stored with a hash of its {@link SettingInfo} tree,
+ * so a plugin is only loaded from a snapshot while its JSON and the settings declared by its modules are unchanged.
+ * <p>
+ * A snapshot starts with the magic number {@value #MAGIC}, a short version, and an int number of plugins.
+ * Each plugin has its ID, a long modification stamp, the names of modules in its JSON that are not stored,
+ * the names of modules whose settings could not be encoded, and an int number of stored modules, each with its name, a long schema hash, an int length, and its encoded settings.
+ * Strings are stored as an int length followed by UTF-8 bytes.
+ * Settings are stored as an int number of entries, each with a name, a byte tag, and a value.
+ * Values of types other than strings and primitive wrappers are stored as JSON.
+ * </p>
+ * @author Magnileve
+ */
+class SettingSnapshot {
+
+static final int MAGIC = 0x43485353;
+static final short VERSION = 2;
+
+private static final byte NULL = 0;
+private static final byte MAP = 1;
+private static final byte BOOLEAN = 2;
+private static final byte BYTE = 3;
+private static final byte SHORT = 4;
+private static final byte INTEGER = 5;
+private static final byte LONG = 6;
+private static final byte FLOAT = 7;
+private static final byte DOUBLE = 8;
+private static final byte STRING = 9;
+private static final byte JSON = 10;
+
+private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+private static final long FNV_PRIME = 0x100000001b3L;
+
+private final Map<String, Plugin> plugins;
+
+private boolean modified;
+
+/**
+ * Creates a new empty {@code SettingSnapshot}.
+ */
+SettingSnapshot() {
+	plugins = new LinkedHashMap<>();
+}
+
+/**
+ * Reads a snapshot.  Settings of modules are decoded when they are loaded, so {@code buffer} must not be modified afterwards.
+ * @param buffer contains the snapshot
+ * @return the snapshot
+ * @throws IOException if the buffer does not contain a valid snapshot of this version
+ */
+static SettingSnapshot read(ByteBuffer buffer) throws IOException {
+	try {
+		if(buffer.getInt() != MAGIC) throw new IOException("Not a setting snapshot");
+		short version = buffer.getShort();
+		if(version != VERSION) throw new IOException("Unsupported setting snapshot version " + version);
+		SettingSnapshot snapshot = new SettingSnapshot();
+		for(int i = buffer.getInt(); i > 0; i--) {
+			String pluginID = readString(buffer);
+			long stamp = buffer.getLong();
+			Set<String> missingModules = new HashSet<>();
+			for(int j = buffer.getInt(); j > 0; j--) missingModules.add(readString(buffer));
+			Set<String> unencodedModules = new HashSet<>();
+			for(int j = buffer.getInt(); j > 0; j--) unencodedModules.add(readString(buffer));
+			Map<String, ModuleSettings> modules = new LinkedHashMap<>();
+			for(int j = buffer.getInt(); j > 0; j--) {
+				String name = readString(buffer);
+				long schemaHash = buffer.getLong();
+				int length = readLength(buffer);
+				ByteBuffer data = buffer.slice();
+				data.limit(length);
+				buffer.position(buffer.position() + length);
+				modules.put(name, new ModuleSettings(schemaHash, data));
+			}
+			snapshot.plugins.put(pluginID, new Plugin(stamp, modules, missingModules, unencodedModules));
+		}
+		return snapshot;
+	} catch(BufferUnderflowException | IllegalArgumentException e) {
+		throw new IOException("Truncated setting snapshot", e);
+	}
+}
+
+/**
+ * Gets the stored settings of a plugin.
+ * @param pluginID a plugin
+ * @return the stored settings of the plugin, or {@code null} if the plugin is not stored
+ */
+Plugin get(String pluginID) {
+	return plugins.get(pluginID);
+}
+
+/**
+ * Stores the settings of a plugin, replacing previously stored settings.
+ * @param pluginID a plugin
+ * @param plugin settings of the plugin
+ */
+void put(String pluginID, Plugin plugin) {
+	plugins.put(pluginID, plugin);
+	modified = true;
+}
+
+/**
+ * Removes the stored settings of a plugin.
+ * @param pluginID a plugin
+ */
+void remove(String pluginID) {
+	if(plugins.remove(pluginID) != null) modified = true;
+}
+
+/**
+ * Indicates if settings have been stored since this snapshot was read or last encoded.
+ * @return {@code true} if this snapshot has unwritten changes
+ */
+boolean isModified() {
+	return modified;
+}
+
+/**
+ * Encodes this snapshot.
+ * @return a new buffer containing this snapshot
+ */
+ByteBuffer write() {
+	modified = false;
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try(DataOutputStream out = new DataOutputStream(bytes)) {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeInt(plugins.size());
+		for(Entry<String, Plugin> plugin:plugins.entrySet()) {
+			writeString(out, plugin.getKey());
+			out.writeLong(plugin.getValue().stamp);
+			out.writeInt(plugin.getValue().missingModules.size());
+			for(String name:plugin.getValue().missingModules) writeString(out, name);
+			out.writeInt(plugin.getValue().unencodedModules.size());
+			for(String name:plugin.getValue().unencodedModules) writeString(out, name);
+			out.writeInt(plugin.getValue().modules.size());
+			for(Entry<String, ModuleSettings> module:plugin.getValue().modules.entrySet()) {
+				writeString(out, module.getKey());
+				out.writeLong(module.getValue().schemaHash);
+				ByteBuffer data = module.getValue().data.duplicate();
+				out.writeInt(data.remaining());
+				while(data.hasRemaining()) out.write(data.get());
+			}
+		}
+	} catch(IOException e) {
+		throw new IllegalStateException(e);
+	}
+	return ByteBuffer.wrap(bytes.toByteArray());
+}
+
+/**
+ * Computes a hash of the names, types, and limits of settings branching from a node.
+ * @param node a node
+ * @return a 64-bit hash of the settings
+ */
+static long schemaHash(SettingInfo node) {
+	return schemaHash(node, FNV_OFFSET);
+}
+
+private static long schemaHash(SettingInfo node, long hash) {
+	hash = hash(hash, node.getName());
+	if(node.isTree()) {
+		hash = hash(hash, "{");
+		for(SettingInfo sub:node) hash = schemaHash(sub, hash);
+		return hash(hash, "}");
+	}
+	Setting setting = node.getSetting();
+	return hash(hash(hash, setting.type().getName()), setting.limits());
+}
+
+private static long hash(long hash, String str) {
+	for(int i = 0; i < str.length(); i++) {
+		hash ^= str.charAt(i);
+		hash *= FNV_PRIME;
+	}
+	hash ^= 0xff;
+	return hash * FNV_PRIME;
+}
+
+/**
+ * Reads the length of data following it, checking that the data is in the buffer.
+ * @param buffer contains the length followed by the data
+ * @return the length
+ * @throws IOException if the length is negative or greater than the remaining bytes of the buffer
+ */
+private static int readLength(ByteBuffer buffer) throws IOException {
+	int length = buffer.getInt();
+	if(length < 0 || length > buffer.remaining()) throw new IOException("Invalid length " + length + " in setting snapshot");
+	return length;
+}
+
+private static String readString(ByteBuffer buffer) throws IOException {
+	byte[] bytes = new byte[readLength(buffer)];
+	buffer.get(bytes);
+	return new String(bytes, StandardCharsets.UTF_8);
+}
+
+private static void writeString(DataOutputStream out, String str) throws IOException {
+	byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+	out.writeInt(bytes.length);
+	out.write(bytes);
+}
+
+/**
+ * Encodes settings recursively.
+ * @param out output
+ * @param node setting identifiers
+ * @param map map of settings
+ * @param json serializes values of types without a tag
+ * @throws IOException if an I/O error occurs
+ */
+@SuppressWarnings("unchecked")
+private static void writeSettings(DataOutputStream out, SettingInfo node, Map<String, Object> map, JSONManager json) throws IOException {
+	out.writeInt(map.size());
+	for(Entry<String, Object> entry:map.entrySet()) {
+		SettingInfo sub = node.getNode(entry.getKey());
+		Object value = entry.getValue();
+		writeString(out, entry.getKey());
+		if(sub.isTree()) {
+			out.writeByte(MAP);
+			writeSettings(out, sub, (Map<String, Object>) value, json);
+		} else if(value == null) out.writeByte(NULL);
+		else if(value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if(value instanceof Byte) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte) value);
+		} else if(value instanceof Short) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		} else if(value instanceof Integer) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		} else if(value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if(value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if(value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if(value instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String) value);
+		} else {
+			StringWriter write = new StringWriter();
+			JSONWriter w = new JSONWriter(write);
+			w.array();
+			json.serializeCast(w, sub.getSetting().type(), value);
+			w.endArray();
+			out.writeByte(JSON);
+			writeString(out, write.toString());
+		}
+	}
+}
+
+/**
+ * Decodes settings recursively.
+ * @param buffer input
+ * @param node setting identifiers
+ * @param mapFactory creates setting maps
+ * @param json deserializes values stored as JSON
+ * @return a new map of the decoded settings
+ * @throws IOException if the settings cannot be decoded
+ */
+private static Map<String, Object> readSettings(ByteBuffer buffer, SettingInfo node, SettingMapFactory mapFactory, JSONManager json)
+		throws IOException {
+	Map<String, Object> map = mapFactory.newMap();
+	for(int i = buffer.getInt(); i > 0; i--) {
+		String name = readString(buffer);
+		SettingInfo sub = node.getNode(name);
+		if(sub == null) throw new IOException("Unknown setting " + name);
+		Object value;
+		switch(buffer.get()) {
+		case NULL: value = null; break;
+		case MAP: value = readSettings(buffer, sub, mapFactory, json); break;
+		case BOOLEAN: value = buffer.get() != 0; break;
+		case BYTE: value = buffer.get(); break;
+		case SHORT: value = buffer.getShort(); break;
+		case INTEGER: value = buffer.getInt(); break;
+		case LONG: value = buffer.getLong(); break;
+		case FLOAT: value = buffer.getFloat(); break;
+		case DOUBLE: value = buffer.getDouble(); break;
+		case STRING: value = readString(buffer); break;
+		case JSON:
+			JSONTokener p = new JSONTokener(readString(buffer));
+			p.nextClean();
+			Setting setting = sub.getSetting();
+			try {
+				value = json.deserialize(p, setting.type(), setting.limits());
+			} catch(JSONException | IllegalArgumentException | IllegalStateException e) {
+				throw new IOException("Unable to decode setting " + name, e);
+			}
+			break;
+		default:
+			throw new IOException("Unknown tag for setting " + name);
+		}
+		map.put(name, value);
+	}
+	return map;
+}
+
+/**
+ * The stored settings of a plugin.
+ * @author Magnileve
+ */
+static class Plugin {
+	private final long stamp;
+	private final Map<String, ModuleSettings> modules;
+	private final Set<String> missingModules;
+	private final Set<String> unencodedModules;
+
+	private Plugin(long stamp, Map<String, ModuleSettings> modules, Set<String> missingModules, Set<String> unencodedModules) {
+		this.stamp = stamp;
+		this.modules = modules;
+		this.missingModules = missingModules;
+		this.unencodedModules = unencodedModules;
+	}
+
+	/**
+	 * Stores parsed settings of a plugin.
+	 * Modules stored in {@code previous} that are not parsed remain stored if {@code previous} has the same stamp.
+	 * Modules with settings that cannot be encoded are logged and recorded so that only they are parsed from JSON when loaded.
+	 * @param stamp modification stamp of the JSON the settings were parsed from
+	 * @param trees settings of each parsed module
+	 * @param parsed parsed settings of each module
+	 * @param skippedModules names of modules in the JSON that were not parsed
+	 * @param previous previously stored settings of the plugin, or {@code null}
+	 * @param json serializes values of types without a tag
+	 * @param log logs modules with settings that cannot be encoded
+	 * @return the stored settings
+	 */
+	static Plugin of(long stamp, Map<String, SettingInfo> trees, Map<String, Map<String, Object>> parsed,
+			Collection<String> skippedModules, Plugin previous, JSONManager json, Logger log) {
+		Map<String, ModuleSettings> modules = new LinkedHashMap<>();
+		Set<String> missingModules = new HashSet<>();
+		Set<String> unencodedModules = new HashSet<>();
+		boolean keepPrevious = previous != null && previous.stamp == stamp;
+		for(String name:skippedModules) {
+			ModuleSettings module = keepPrevious ? previous.modules.get(name) : null;
+			if(module != null) modules.put(name, module);
+			else if(keepPrevious && previous.unencodedModules.contains(name)) unencodedModules.add(name);
+			else missingModules.add(name);
+		}
+		for(Entry<String, Map<String, Object>> entry:parsed.entrySet()) {
+			SettingInfo tree = trees.get(entry.getKey());
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try(DataOutputStream out = new DataOutputStream(bytes)) {
+				writeSettings(out, tree, entry.getValue(), json);
+			} catch(IOException | JSONException | ClassCastException e) {
+				log.error("Unable to store settings of module " + entry.getKey() + " in setting snapshot", e);
+				unencodedModules.add(entry.getKey());
+				continue;
+			}
+			modules.put(entry.getKey(), new ModuleSettings(schemaHash(tree), ByteBuffer.wrap(bytes.toByteArray())));
+		}
+		return new Plugin(stamp, modules, missingModules, unencodedModules);
+	}
+
+	/**
+	 * Creates stored settings of a plugin with no modules.
+	 * @param stamp modification stamp of the JSON of the plugin
+	 * @return the stored settings
+	 */
+	static Plugin empty(long stamp) {
+		return new Plugin(stamp, new LinkedHashMap<>(0), new HashSet<>(0), new HashSet<>(0));
+	}
+
+	/**
+	 * Gets the modification stamp of the JSON these settings were parsed from.
+	 * @return the modification stamp
+	 */
+	long getStamp() {
+		return stamp;
+	}
+
+	/**
+	 * Gets the names of modules with settings that could not be encoded and must be parsed from JSON.
+	 * @return names of modules that are not stored
+	 */
+	Set<String> getUnencodedModules() {
+		return unencodedModules;
+	}
+
+	/**
+	 * Decodes the stored settings of modules.
+	 * @param trees settings of each module to be loaded
+	 * @param mapFactory creates setting maps
+	 * @param json deserializes values stored as JSON
+	 * @return the settings of each stored module in {@code trees}, or {@code null} if a module in {@code trees}
+	 * is in the JSON of the plugin but is not stored or has changed its settings;
+	 * modules in {@link #getUnencodedModules()} are not included
+	 * @throws IOException if the settings cannot be decoded
+	 */
+	Map<String, Map<String, Object>> load(Map<String, SettingInfo> trees, SettingMapFactory mapFactory, JSONManager json) throws IOException {
+		Map<String, Map<String, Object>> loaded = new LinkedHashMap<>();
+		for(String name:trees.keySet()) if(missingModules.contains(name)) return null;
+		try {
+			for(Entry<String, ModuleSettings> module:modules.entrySet()) {
+				SettingInfo tree = trees.get(module.getKey());
+				if(tree == null) continue;
+				if(module.getValue().schemaHash != schemaHash(tree)) return null;
+				loaded.put(module.getKey(), readSettings(module.getValue().data.duplicate(), tree, mapFactory, json));
+			}
+		} catch(BufferUnderflowException | IllegalArgumentException | IllegalStateException | ClassCastException e) {
+			throw new IOException("Corrupt setting snapshot", e);
+		}
+		return loaded;
+	}
+}
+
+/**
+ * The stored settings of a module.
+ * @author Magnileve
+ */
+private static class ModuleSettings {
+	private final long schemaHash;
+	private final ByteBuffer data;
+
+	private ModuleSettings(long schemaHash, ByteBuffer data) {
+		this.schemaHash = schemaHash;
+		this.data = data;
+	}
+}
+
+}
\ No newline at end of file
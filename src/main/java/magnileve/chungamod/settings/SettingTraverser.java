@@ -229,7 +229,7 @@ public String toString() {
 private static Map<String, Object> getMapOfSettingSafe(ModuleID<?> m,
 		Map<ModuleID<?>, Map<String, Object>> configSettings, String[] settingPath) {
 	Map<String, Object> settings = configSettings.get(m);
-	if(settings != null) return SettingUtil.getMapOfSettingSafe(settings, settingPath, SettingInfo.getTree(m), settingPath.length);
+	if(settings != null) return SettingUtil.getMapOfSettingSafe(settings, settingPath, SettingInfo.getSharedTree(m), settingPath.length);
 	return Collections.EMPTY_MAP;
 }
 
@@ -62,7 +62,7 @@ public static Map<String, Object> getSubMap(Map<String, Object> map, String name
  */
 public static Object setValue(Map<ModuleID<?>, Map<String, Object>> settings, ModuleID<?> m, String[] settingPath, Object value,
 		SettingMapFactory mapFactory) {
-	return setValue(settings.computeIfAbsent(m, k -> mapFactory.newMap()), settingPath, value, SettingInfo.getTree(m), mapFactory);
+	return setValue(settings.computeIfAbsent(m, k -> mapFactory.newMap()), settingPath, value, SettingInfo.getSharedTree(m), mapFactory);
 }
 
 /**
@@ -78,8 +78,9 @@ public static Object setValue(Map<ModuleID<?>, Map<String, Object>> settings, Mo
  */
 public static Object setValue(Map<String, Object> settings, String[] settingPath, Object value, SettingInfo node,
 		SettingMapFactory mapFactory) {
-	return getMapOfSetting(settings, settingPath, node, settingPath.length - 1, null, mapFactory)
-			.put(node.getNode(settingPath).getName(), value);
+	SettingInfo[] nodes = node.getNodes(settingPath, settingPath.length);
+	return getMapOfSetting(settings, settingPath, nodes, settingPath.length - 1, null, mapFactory)
+			.put(nodes[settingPath.length].getName(), value);
 }
 
 /**
@@ -92,8 +93,9 @@ public static Object setValue(Map<String, Object> settings, String[] settingPath
  * @throws UnsetSettingException if the setting does not have a value
  */
 public static Object getValue(Map<String, Object> settings, String[] settingPath, SettingInfo node) {
-	return get(getMapOfSetting(settings, settingPath, node, settingPath.length - 1, null, null),
-			node.getNode(settingPath).getName(), settingPath);
+	SettingInfo[] nodes = node.getNodes(settingPath, settingPath.length);
+	return get(getMapOfSetting(settings, settingPath, nodes, settingPath.length - 1, null, null),
+			nodes[settingPath.length].getName(), settingPath);
 }
 
 /**
@@ -110,7 +112,7 @@ public static Object getValue(Map<ModuleID<?>, Map<String, Object>> settings, Mo
 		String[] settingPath, SettingInfo node) {
 	Map<String, Object> root = settings.get(m);
 	if(root == null) throw new UnsetSettingException(settingPath);
-	return getValue(root, settingPath, SettingInfo.getTree(m));
+	return getValue(root, settingPath, SettingInfo.getSharedTree(m));
 }
 
 /**
@@ -125,8 +127,9 @@ public static Object getValue(Map<ModuleID<?>, Map<String, Object>> settings, Mo
 public static Object removeValue(Map<String, Object> settings, String[] settingPath, SettingInfo node) {
 	int l = settingPath.length - 1;
 	Deque<Map<String, Object>> maps = new ArrayDeque<>();
-	return remove(getMapOfSetting(settings, settingPath, node, l, maps, null),
-			node.getNode(settingPath).getName(), settingPath, node, l, maps);
+	SettingInfo[] nodes = node.getNodes(settingPath, settingPath.length);
+	return remove(getMapOfSetting(settings, settingPath, nodes, l, maps, null),
+			nodes[settingPath.length].getName(), settingPath, node, l, maps);
 }
 
 /**
@@ -143,7 +146,7 @@ public static Object removeValue(Map<ModuleID<?>, Map<String, Object>> settings,
 		String[] settingPath, SettingInfo node) {
 	Map<String, Object> root = settings.get(m);
 	if(root == null) throw new UnsetSettingException(settingPath);
-	Object value = removeValue(root, settingPath, SettingInfo.getTree(m));
+	Object value = removeValue(root, settingPath, SettingInfo.getSharedTree(m));
 	if(root.isEmpty()) settings.remove(m);
 	return value;
 }
@@ -179,12 +182,30 @@ public static Map<String, Object> getMapOfSettingSafe(Map<String, Object> root,
  * @throws InvalidSettingPathException if this setting path does not point to a subsetting map
  * @throws UnsetSettingException if {@code mapFactory} is {@code null}, and the setting map does not exist
  */
-@SuppressWarnings("unchecked")
 public static Map<String, Object> getMapOfSetting(Map<String, Object> root, String[] settingPath, SettingInfo node, int depth,
 		Deque<Map<String, Object>> maps, SettingMapFactory mapFactory) {
+	SettingInfo[] nodes = node.getNodes(settingPath, Math.max(Math.min(depth, settingPath.length), 0));
+	return getMapOfSetting(root, settingPath, nodes, depth, maps, mapFactory);
+}
+
+/**
+ * Gets the setting map that a given setting should be stored in from the nodes along its setting path.
+ * @param root root setting map
+ * @param settingPath path of setting
+ * @param nodes nodes along the setting path, as returned by {@link SettingInfo#getNodes(String[], int)}
+ * @param depth the index after the setting map in {@code settingPath}
+ * @param maps if not null, each setting map is added to this stack, not including the returned map
+ * @param mapFactory if not null, creates new setting maps when they do not exist
+ * @return the setting map representing {@code settingPath} at index {@code depth}
+ * @throws InvalidSettingPathException if this setting path does not point to a subsetting map
+ * @throws UnsetSettingException if {@code mapFactory} is {@code null}, and the setting map does not exist
+ */
+@SuppressWarnings("unchecked")
+private static Map<String, Object> getMapOfSetting(Map<String, Object> root, String[] settingPath, SettingInfo[] nodes, int depth,
+		Deque<Map<String, Object>> maps, SettingMapFactory mapFactory) {
 	for(int i = 0; i < depth; i++) {
-		node = node.getNode(settingPath[i]);
-		if(node == null || !node.isTree())
+		SettingInfo node = nodes[i + 1];
+		if(!node.isTree())
 			throw new InvalidSettingPathException(settingPath);
 		if(maps != null) maps.push(root);
 		root = (Map<String, Object>) root.computeIfAbsent(node.getName(), k -> {
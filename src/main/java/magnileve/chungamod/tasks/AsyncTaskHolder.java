@@ -0,0 +1,98 @@
+package magnileve.chungamod.tasks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import magnileve.chungamod.Tick;
+import magnileve.chungamod.TickListener;
+
+/**
+ * A {@link Task} that runs work on a worker thread of {@link AsyncTasks}, then passes the result to a consumer and finishes on the client thread.
+ * If the pool is at capacity when this task is started, this task waits on {@link Tick#MAIN} until it can be submitted.
+ * If the work throws an exception, the exception is logged and this task finishes without calling the consumer.
+ * @param <T> result type of the work
+ * @author Magnileve
+ */
+public class AsyncTaskHolder<T> implements Task, TickListener {
+
+private final Callable<? extends T> work;
+private final Consumer<? super T> complete;
+private final SoftCancelTask softCancel;
+private final FinishTask finish;
+
+private Tick.Registration registration = Tick.Registration.INACTIVE;
+private Future<?> future;
+private volatile int generation;
+
+AsyncTaskHolder(Callable<? extends T> work, Consumer<? super T> complete, SoftCancelTask softCancel, FinishTask finish) {
+	this.work = work;
+	this.complete = complete;
+	this.softCancel = softCancel;
+	this.finish = finish;
+}
+
+@Override
+public void run() {
+	generation++;
+	if(!submit()) registration = Tick.MAIN.add(this, 1);
+}
+
+/**
+ * Attempts to submit the work of this task.
+ * The submission belongs to the current generation of this task,
+ * so its completion is discarded if this task is cancelled or restarted before the completion runs.
+ * @return {@code true} if the work was submitted; {@code false} if the pool is at capacity
+ */
+private boolean submit() {
+	int submission = generation;
+	future = AsyncTasks.trySubmit(() -> {
+		T result;
+		try {
+			result = work.call();
+		} catch(Exception e) {
+			if(generation == submission) {
+				AsyncTasks.logError(work, e);
+				Tick.MAIN.runRequired(() -> {
+					if(generation == submission) finish();
+				});
+			}
+			return;
+		}
+		Tick.MAIN.runRequired(() -> {
+			if(generation == submission) {
+				if(complete != null) complete.accept(result);
+				finish();
+			}
+		});
+	});
+	return future != null;
+}
+
+@Override
+public int onTick() {
+	return submit() ? -1 : 1;
+}
+
+@Override
+public void finish() {
+	if(finish != null) finish.finish();
+}
+
+@Override
+public void softCancel() {
+	cancel();
+	if(softCancel != null) softCancel.softCancel();
+}
+
+@Override
+public void cancel() {
+	generation++;
+	registration.cancel();
+	if(future != null) {
+		AsyncTasks.cancel(future);
+		future = null;
+	}
+}
+
+}
\ No newline at end of file
@@ -0,0 +1,147 @@
+package magnileve.chungamod.tasks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+
+import magnileve.chungamod.Chung;
+import magnileve.chungamod.modules.ContainsInit;
+import magnileve.chungamod.modules.Init;
+
+/**
+ * A bounded pool of worker threads for running work off of the client thread.
+ * Work is only accepted while the number of queued and running jobs is below the capacity of the pool,
+ * so callers must handle rejection instead of growing the queue without limit.
+ * Results of work should be passed back to the client thread through {@link magnileve.chungamod.Tick#run(Runnable) Tick.run(Runnable)}.
+ * The number of threads and the capacity are set by the Chungamod properties
+ * {@code chungamod.async.threads} and {@code chungamod.async.capacity}.
+ * @author Magnileve
+ * @see Tasks#newAsyncTask(Callable, java.util.function.Consumer, SoftCancelTask, FinishTask)
+ */
+@ContainsInit
+public class AsyncTasks {
+
+private static final String THREADS_PROPERTY = "chungamod.async.threads";
+private static final String CAPACITY_PROPERTY = "chungamod.async.capacity";
+private static final int DEFAULT_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+private static final int DEFAULT_CAPACITY = 64;
+private static final long KEEP_ALIVE_SECONDS = 30;
+
+private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+private static final AtomicInteger PENDING = new AtomicInteger();
+private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS,
+		KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), run -> {
+			Thread thread = new Thread(run, "Chungamod async #" + THREAD_COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+private static volatile int capacity = DEFAULT_CAPACITY;
+private static Logger log;
+
+static {
+	EXECUTOR.allowCoreThreadTimeOut(true);
+}
+
+public static void init(Logger logIn) {
+	log = logIn;
+}
+
+@Init
+private static void initProperties() {
+	Chung.SYSTEM.addProperty(THREADS_PROPERTY, Integer.toString(DEFAULT_THREADS), value -> {
+		try {
+			setThreads(Integer.parseInt(value));
+		} catch(IllegalArgumentException e) {
+			Chung.SYSTEM.setProperty(THREADS_PROPERTY, null);
+		}
+	});
+	Chung.SYSTEM.addProperty(CAPACITY_PROPERTY, Integer.toString(DEFAULT_CAPACITY), value -> {
+		try {
+			int newCapacity = Integer.parseInt(value);
+			if(newCapacity < 1) throw new IllegalArgumentException();
+			capacity = newCapacity;
+		} catch(IllegalArgumentException e) {
+			Chung.SYSTEM.setProperty(CAPACITY_PROPERTY, null);
+		}
+	});
+	Chung.SYSTEM.addShutdownHook(EXECUTOR::shutdownNow);
+}
+
+private static void setThreads(int threads) {
+	if(threads < 1) throw new IllegalArgumentException("Thread count must be positive");
+	if(threads > EXECUTOR.getMaximumPoolSize()) {
+		EXECUTOR.setMaximumPoolSize(threads);
+		EXECUTOR.setCorePoolSize(threads);
+	} else {
+		EXECUTOR.setCorePoolSize(threads);
+		EXECUTOR.setMaximumPoolSize(threads);
+	}
+}
+
+/**
+ * Submits work to be run on a worker thread if the pool has capacity for it.
+ * @param work the work to be run
+ * @return a {@link Future} representing the work, or {@code null} if the pool is at capacity
+ */
+public static Future<?> trySubmit(Runnable work) {
+	for(int pending = PENDING.get(); pending < capacity; pending = PENDING.get()) if(PENDING.compareAndSet(pending, pending + 1)) {
+		FutureTask<?> future = new FutureTask<Void>(work, null) {
+			@Override
+			protected void done() {
+				PENDING.decrementAndGet();
+			}
+		};
+		try {
+			EXECUTOR.execute(future);
+		} catch(RejectedExecutionException e) {
+			PENDING.decrementAndGet();
+			return null;
+		}
+		return future;
+	}
+	return null;
+}
+
+/**
+ * Cancels work submitted through {@link #trySubmit(Runnable)}, interrupting it if it is running,
+ * and removes it from the queue of the pool.
+ * @param future the future returned when the work was submitted
+ */
+public static void cancel(Future<?> future) {
+	if(future.cancel(true) && future instanceof Runnable) EXECUTOR.remove((Runnable) future);
+}
+
+/**
+ * Gets the number of queued and running jobs.
+ * @return the number of queued and running jobs
+ */
+public static int getPending() {
+	return PENDING.get();
+}
+
+/**
+ * Gets the maximum number of queued and running jobs.
+ * @return the capacity of the pool
+ */
+public static int getCapacity() {
+	return capacity;
+}
+
+/**
+ * Logs an exception thrown by asynchronous work.
+ * @param work the work throwing the exception
+ * @param e the exception
+ */
+static void logError(Object work, Throwable e) {
+	log.error("Exception in async task " + work, e);
+}
+
+}
\ No newline at end of file
@@ -14,6 +14,8 @@ private final TickListener tickListener;
 private final TickListener startDelay;
 private final Tick tick;
 
+private Tick.Registration registration = Tick.Registration.INACTIVE;
+
 TaskByTickHolder(TickListener tickListener, TickListener startDelay, CoreTask core, FinishTask finish, SoftCancelTask softCancel, Tick tick) {
 	super(core, finish, softCancel);
 	this.tickListener = tickListener;
@@ -24,19 +26,27 @@ TaskByTickHolder(TickListener tickListener, TickListener startDelay, CoreTask co
 @Override
 public void run() {
 	super.run();
-	tick.add(this, startDelay.onTick());
+	registration = tick.add(this, startDelay.onTick());
 }
 
 @Override
 public void cancel() {
 	super.cancel();
-	tick.remove(this);
+	registration.cancel();
 }
 
 @Override
 public void softCancel() {
 	super.softCancel();
-	tick.remove(this);
+	registration.cancel();
+}
+
+/**
+ * Gets the listener called each time this task is ticked.
+ * @return the tick listener of this task
+ */
+public TickListener getTickListener() {
+	return tickListener;
 }
 
 @Override
@@ -1,6 +1,8 @@
 package magnileve.chungamod.tasks;
 
+import java.util.concurrent.Callable;
 import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 import magnileve.chungamod.Tick;
 import magnileve.chungamod.TickListener;
@@ -60,6 +62,33 @@ public static Task newTask(CoreTask core, TickListener tickListener, TickListene
 	};
 }
 
+/**
+ * Creates a new {@link Task} that runs work on a worker thread of {@link AsyncTasks},
+ * then passes the result to a consumer and finishes on the client thread.
+ * If the worker pool is at capacity, this task waits until it can be submitted.
+ * @param <T> result type of the work
+ * @param work the work to be run off of the client thread
+ * @param complete if not null, accepts the result of the work on the client thread
+ * @param softCancel if not null, runs when the task is cancelled because the client disconnects from server
+ * @param finish if not null, runs when the task finishes
+ * @return a new {@code Task} backed by the given components
+ */
+public static <T> Task newAsyncTask(Callable<? extends T> work, Consumer<? super T> complete, SoftCancelTask softCancel, FinishTask finish) {
+	return new AsyncTaskHolder<>(work, complete, softCancel, finish);
+}
+
+/**
+ * Adds a {@code Task} to a queue that runs work on a worker thread of {@link AsyncTasks},
+ * then passes the result to a consumer on the client thread.
+ * @param <T> result type of the work
+ * @param work the work to be run off of the client thread
+ * @param complete if not null, accepts the result of the work on the client thread
+ * @param queue the queue
+ */
+public static <T> void queueAsync(Callable<? extends T> work, Consumer<? super T> complete, TaskQueue queue) {
+	queue.offer(newAsyncTask(work, complete, null, queue.getFinishTask()));
+}
+
 /**
  * Creates a {@link Task} that waits for an amount of client ticks, then finishes.
  * @param ticks amount of client ticks to wait
@@ -68,6 +97,8 @@ public static Task newTask(CoreTask core, TickListener tickListener, TickListene
  */
 public static Task wait(int ticks, FinishTask finish) {
 	class TickListenerTask implements Task, TickListener {
+		private Tick.Registration registration = Tick.Registration.INACTIVE;
+		
 		@Override
 		public int onTick() {
 			finish();
@@ -81,18 +112,18 @@ public static Task wait(int ticks, FinishTask finish) {
 		
 		@Override
 		public void softCancel() {
-			Tick.MAIN.remove(this);
+			registration.cancel();
 		}
 		
 		@Override
 		public void cancel() {
-			Tick.MAIN.remove(this);
+			registration.cancel();
 		}
 		
 		@Override
 		public void run() {
 			if(ticks < 0) finish();
-			else Tick.MAIN.add(this, ticks);
+			else registration = Tick.MAIN.add(this, ticks);
 		}
 	}
 	return new TickListenerTask();
@@ -0,0 +1,150 @@
+package magnileve.chungamod.util;
+
+/**
+ * Records a distribution of latencies in nanoseconds using log-linear buckets, similar to an HDR histogram.
+ * Each power of two is divided into {@value #SUB_BUCKETS} buckets,
+ * so values are recorded with a relative error of at most {@code 1/}{@value #SUB_BUCKETS}.
+ * Recording a value is constant time and does not allocate.
+ * This class is not thread-safe.
+ * @author Magnileve
+ */
+public class LatencyHistogram {
+
+private static final int SUB_BITS = 4;
+/**
+ * Number of buckets each power of two is divided into.
+ */
+public static final int SUB_BUCKETS = 1 << SUB_BITS;
+/**
+ * Values are clamped to below {@code 2^MAX_MAGNITUDE} nanoseconds (about 68 seconds).
+ */
+private static final int MAX_MAGNITUDE = 36;
+private static final long MAX_VALUE = (1L << MAX_MAGNITUDE) - 1;
+
+private final long[] counts;
+
+private long count;
+private long total;
+private long min = Long.MAX_VALUE;
+private long max;
+
+/**
+ * Creates an empty {@code LatencyHistogram}.
+ */
+public LatencyHistogram() {
+	counts = new long[indexOf(MAX_VALUE) + 1];
+}
+
+/**
+ * Records a value.
+ * @param nanos a latency in nanoseconds; negative values are recorded as zero
+ */
+public void record(long nanos) {
+	if(nanos < 0) nanos = 0;
+	else if(nanos > MAX_VALUE) nanos = MAX_VALUE;
+	counts[indexOf(nanos)]++;
+	count++;
+	total += nanos;
+	if(nanos < min) min = nanos;
+	if(nanos > max) max = nanos;
+}
+
+/**
+ * Gets the bucket index of a value.
+ * @param value a non-negative value
+ * @return the index of the bucket containing {@code value}
+ */
+private static int indexOf(long value) {
+	if(value < SUB_BUCKETS) return (int) value;
+	int magnitude = 63 - Long.numberOfLeadingZeros(value);
+	int shift = magnitude - SUB_BITS;
+	return (shift + 1 << SUB_BITS) + (int) (value >>> shift & SUB_BUCKETS - 1);
+}
+
+/**
+ * Gets the lowest value contained by a bucket.
+ * @param index index of bucket
+ * @return the lowest value recorded to the bucket at {@code index}
+ */
+private static long lowestValueAt(int index) {
+	if(index < SUB_BUCKETS) return index;
+	int shift = (index >> SUB_BITS) - 1;
+	return (long) (SUB_BUCKETS + (index & SUB_BUCKETS - 1)) << shift;
+}
+
+/**
+ * Gets the number of recorded values.
+ * @return the number of recorded values
+ */
+public long getCount() {
+	return count;
+}
+
+/**
+ * Gets the sum of all recorded values.
+ * @return the sum of all recorded values in nanoseconds
+ */
+public long getTotal() {
+	return total;
+}
+
+/**
+ * Gets the lowest recorded value.
+ * @return the lowest recorded value in nanoseconds, or {@code 0} if no values have been recorded
+ */
+public long getMin() {
+	return count == 0 ? 0 : min;
+}
+
+/**
+ * Gets the highest recorded value.
+ * @return the highest recorded value in nanoseconds
+ */
+public long getMax() {
+	return max;
+}
+
+/**
+ * Gets the mean of all recorded values.
+ * @return the mean of all recorded values in nanoseconds, or {@code 0} if no values have been recorded
+ */
+public double getMean() {
+	return count == 0 ? 0 : (double) total / count;
+}
+
+/**
+ * Gets the value at a percentile of recorded values.
+ * The returned value is the lowest value of the bucket containing the percentile, limited to the recorded minimum and maximum.
+ * @param percentile a percentile from {@code 0} to {@code 100}
+ * @return the value at the given percentile in nanoseconds, or {@code 0} if no values have been recorded
+ */
+public long getValueAtPercentile(double percentile) {
+	if(count == 0) return 0;
+	long target = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * count);
+	if(target < 1) target = 1;
+	else if(target >= count) return max;
+	long seen = 0;
+	for(int i = 0; i < counts.length; i++) {
+		seen += counts[i];
+		if(seen >= target) return Math.min(Math.max(lowestValueAt(i), getMin()), max);
+	}
+	return max;
+}
+
+/**
+ * Removes all recorded values.
+ */
+public void reset() {
+	for(int i = 0; i < counts.length; i++) counts[i] = 0;
+	count = 0;
+	total = 0;
+	min = Long.MAX_VALUE;
+	max = 0;
+}
+
+@Override
+public String toString() {
+	return "LatencyHistogram with count: " + count + ", mean: " + (long) getMean() + "ns, max: " + max + "ns";
+}
+
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+package magnileve.chungamod.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, array-backed queue for many producer threads and a single consumer thread.
+ * Each slot of the ring has a sequence number that tells producers and the consumer whether it is free or full,
+ * so neither offering nor polling allocates.
+ * {@link #offer(Object)} is thread-safe, while {@link #poll()} and {@link #size()} may only be called by the consumer thread.
+ * @author Magnileve
+ * @param <E> element type
+ */
+public class MPSCRing<E> {
+
+private final AtomicReferenceArray<E> elements;
+private final AtomicLongArray sequences;
+private final int mask;
+private final AtomicLong tail;
+
+private long head;
+
+/**
+ * Creates a new ring with room for at least the given number of elements.
+ * @param capacity minimum capacity; rounded up to a power of two
+ * @throws IllegalArgumentException if {@code capacity} is not positive or is too large
+ */
+public MPSCRing(int capacity) {
+	if(capacity < 1 || capacity > 1 << 30) throw new IllegalArgumentException("Illegal capacity: " + capacity);
+	int size = Integer.highestOneBit(capacity);
+	if(size < capacity) size <<= 1;
+	elements = new AtomicReferenceArray<>(size);
+	sequences = new AtomicLongArray(size);
+	for(int i = 0; i < size; i++) sequences.set(i, i);
+	mask = size - 1;
+	tail = new AtomicLong();
+}
+
+/**
+ * Adds an element to the tail of this ring if there is room.  This method is thread-safe.
+ * @param e the element
+ * @return {@code true} if the element was added; {@code false} if this ring is full
+ * @throws NullPointerException if {@code e} is {@code null}
+ */
+public boolean offer(E e) {
+	if(e == null) throw new NullPointerException();
+	long pos = tail.get();
+	for(;;) {
+		int index = (int) pos & mask;
+		long diff = sequences.get(index) - pos;
+		if(diff == 0) {
+			if(tail.compareAndSet(pos, pos + 1)) {
+				elements.lazySet(index, e);
+				sequences.set(index, pos + 1);
+				return true;
+			}
+			pos = tail.get();
+		} else if(diff < 0) return false;
+		else pos = tail.get();
+	}
+}
+
+/**
+ * Removes the element at the head of this ring.  This method may only be called by the consumer thread.
+ * @return the removed element, or {@code null} if this ring is empty or the next element is still being written
+ */
+public E poll() {
+	int index = (int) head & mask;
+	if(sequences.get(index) != head + 1) return null;
+	E e = elements.get(index);
+	elements.lazySet(index, null);
+	sequences.lazySet(index, head + mask + 1);
+	head++;
+	return e;
+}
+
+/**
+ * Gets the number of elements claimed by producers and not yet polled.  This method may only be called by the consumer thread.
+ * @return the number of elements in this ring
+ */
+public int size() {
+	return (int) (tail.get() - head);
+}
+
+/**
+ * Gets the maximum number of elements this ring can hold.
+ * @return the capacity of this ring
+ */
+public int capacity() {
+	return mask + 1;
+}
+
+}
\ No newline at end of file